@@ -0,0 +1,28 @@
+package com.smalltiantian.common;
+
+/**
+ * {@link WrapGson#toJson(JsonFormat)} 的输出格式。
+ */
+public enum JsonFormat {
+    /**
+     * 紧凑格式，不含任何空白，键按插入顺序输出。与 {@link WrapGson#toString()} 结果相同。
+     */
+    COMPACT,
+
+    /**
+     * 缩进格式，每层缩进两个空格，键按插入顺序输出，便于调试阅读。
+     */
+    PRETTY,
+
+    /**
+     * 规范格式，不含任何空白，键按 UTF-16 码元顺序排序。
+     *
+     * 数字按 ECMAScript {@code Number.prototype.toString} 的规则输出（与 RFC 8785 相同），但保留全部有效数字：
+     * 小数点位置在 {@code (-6, 21]} 之间时不使用指数形式，如 {@code 1000}、{@code 0.0001}；
+     * 其余使用小写 {@code e} 且指数总带正负号的科学计数法，如 {@code 1e+21}、{@code 1.5e-7}。
+     * 数值相等的数字（如 {@code 1.50} 与 {@code 15e-1}）总是得到相同的输出。
+     *
+     * 相同内容的 {@code WrapGson} 总是得到相同的字符串，可用于签名或作为缓存键。
+     */
+    CANONICAL
+}
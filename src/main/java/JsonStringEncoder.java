@@ -0,0 +1,68 @@
+package com.smalltiantian.common;
+
+/**
+ * 将 {@code String} 编码为符合 <a href="https://tools.ietf.org/html/rfc8259#section-7">RFC 8259</a> 的 JSON 字符串。
+ *
+ * ASCII 范围内需要转义的字符通过预先计算的 128 项转义表查找，
+ * 不需要转义的连续字符段整体复制到输出中。
+ *
+ * 转义规则与 Gson 的 {@code JsonWriter} 保持一致：{@code "} 与 {@code \} 以反斜杠转义，
+ * 控制字符使用短转义或六字符的 Unicode 转义，另外 {@code U+2028} / {@code U+2029} 也会被转义，
+ * 保证输出可以直接嵌入 JavaScript 中。
+ */
+final class JsonStringEncoder {
+    private static final String[] REPLACEMENT_CHARS = new String[128];
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+        }
+        REPLACEMENT_CHARS['"'] = "\\\"";
+        REPLACEMENT_CHARS['\\'] = "\\\\";
+        REPLACEMENT_CHARS['\t'] = "\\t";
+        REPLACEMENT_CHARS['\b'] = "\\b";
+        REPLACEMENT_CHARS['\n'] = "\\n";
+        REPLACEMENT_CHARS['\r'] = "\\r";
+        REPLACEMENT_CHARS['\f'] = "\\f";
+    }
+
+    private JsonStringEncoder() {
+    }
+
+    /**
+     * 将 {@code value} 编码为带引号的 JSON 字符串并追加到 {@code sb} 中。
+     *
+     * @param sb    输出
+     * @param value 将要编码的字符串
+     */
+    static void encode(StringBuilder sb, String value) {
+        sb.append('"');
+        int last = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c < 128) {
+                replacement = REPLACEMENT_CHARS[c];
+                if (replacement == null) {
+                    continue;
+                }
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            if (last < i) {
+                sb.append(value, last, i);
+            }
+            sb.append(replacement);
+            last = i + 1;
+        }
+        if (last < length) {
+            sb.append(value, last, length);
+        }
+        sb.append('"');
+    }
+}
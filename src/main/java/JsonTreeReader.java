@@ -0,0 +1,270 @@
+package com.smalltiantian.common;
+
+import java.io.EOFException;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.ArrayList;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * 从 {@link JsonReader} 流式读取 token，直接构建 WrapGson，不经过 Gson 的 {@code JsonElement}。
+ *
+ * 每读取一个 token 即检查 {@link ParseLimits}，超出时立即抛出异常，剩余输入不再读取。
+ * 字符串长度在读取过程中检查：原始字符数超出限制的 {@value #MAX_ESCAPE_LENGTH} 倍后，最多再读取一个 {@link JsonReader} 缓冲区的字符即抛出异常。
+ * 容器使用显式栈维护，不依赖方法递归。
+ */
+final class JsonTreeReader {
+    /**
+     * {@link JsonReader} 内部缓冲区的大小，即读取一个字符串时预读的最多字符数。
+     */
+    private static final int READER_BUFFER_SIZE = 1024;
+    /**
+     * 一个字符在 JSON 字符串中最多占用的原始字符数，即六字符 Unicode 转义的长度。
+     */
+    private static final int MAX_ESCAPE_LENGTH = 6;
+
+    private final CountingReader counter;
+    private final JsonReader reader;
+    private final ParseLimits limits;
+    private final WrapGsonArena arena;
+    private long tokens;
+    private long nodes;
+    private int maxDepth;
+
+    private JsonTreeReader(Reader in, ParseLimits limits, WrapGsonArena arena) {
+        boolean counting = WrapGsonMetrics.ENABLED || limits.getMaxStringLength() != Integer.MAX_VALUE;
+        this.counter = counting ? new CountingReader(in) : null;
+        this.reader = new JsonReader(counting ? this.counter : in);
+        this.reader.setLenient(true);
+        this.limits = limits;
+        this.arena = arena;
+    }
+
+    /**
+     * 读取 {@code in} 中的整个 JSON 文档。
+     *
+     * 与 {@code Gson#fromJson} 一致：使用宽松模式读取，文档之后不能有多余内容，
+     * 输入为空时返回 {@code null}。成功读取后通知 {@link WrapGsonListener#onParse}。
+     *
+     * @param  in     输入
+     * @param  limits 解析限制
+     * @param  arena  分配对象与列表存储的作用域，为 {@code null} 时直接在堆上分配
+     * @return WrapGson 数据，JSON {@code null} 或空输入返回 {@code null}
+     * @throws ParseLimitExceededException 超出解析限制
+     */
+    static WrapGson read(Reader in, ParseLimits limits, WrapGsonArena arena) {
+        if (!WrapGsonMetrics.ENABLED) {
+            return new JsonTreeReader(in, limits, arena).readDocument();
+        }
+
+        long start = System.nanoTime();
+        long reused = arena == null ? 0 : arena.reused();
+        JsonTreeReader treeReader = new JsonTreeReader(in, limits, arena);
+        WrapGson json = treeReader.readDocument();
+        if (arena != null) {
+            reused = arena.reused() - reused;
+        }
+        WrapGsonMetrics.LISTENER.onParse(System.nanoTime() - start, treeReader.counter.count,
+                treeReader.nodes, reused, treeReader.maxDepth);
+        return json;
+    }
+
+    private WrapGson readDocument() {
+        try {
+            WrapGson json = read();
+            if (this.reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonIOException("JSON document was not fully consumed.");
+            }
+            return json;
+        } catch (EOFException e) {
+            if (this.tokens == 0) {
+                return null;
+            }
+            throw new JsonSyntaxException(e);
+        } catch (MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    private WrapGson read() throws IOException {
+        List<Frame> stack = new ArrayList<Frame>();
+        while (true) {
+            JsonToken token = this.reader.peek();
+            countToken();
+
+            WrapGson value;
+            switch (token) {
+                case BEGIN_OBJECT:
+                    checkDepth(stack.size() + 1);
+                    this.reader.beginObject();
+                    stack.add(new Frame(newObject()));
+                    continue;
+                case BEGIN_ARRAY:
+                    checkDepth(stack.size() + 1);
+                    this.reader.beginArray();
+                    stack.add(new Frame(newList()));
+                    continue;
+                case NAME:
+                    stack.get(stack.size() - 1).name = nextString(token);
+                    continue;
+                case END_OBJECT:
+                    this.reader.endObject();
+                    value = stack.remove(stack.size() - 1).object;
+                    break;
+                case END_ARRAY:
+                    this.reader.endArray();
+                    value = WrapGson.newProperty(stack.remove(stack.size() - 1).list);
+                    break;
+                case STRING:
+                    value = WrapGson.newProperty(nextString(token));
+                    break;
+                case NUMBER:
+                    value = WrapGson.newProperty(new LazilyParsedNumber(nextString(token)));
+                    break;
+                case BOOLEAN:
+                    value = WrapGson.newProperty(this.reader.nextBoolean());
+                    break;
+                case NULL:
+                    this.reader.nextNull();
+                    value = null;
+                    break;
+                default:
+                    throw new JsonSyntaxException(String.format("Unexpected %s at path %s.", token, this.reader.getPath()));
+            }
+
+            if (value != null) {
+                this.nodes++;
+            }
+            if (stack.isEmpty()) {
+                return value;
+            }
+            Frame parent = stack.get(stack.size() - 1);
+            if (++parent.entries > this.limits.getMaxEntries()) {
+                throw new ParseLimitExceededException.Entries(this.limits.getMaxEntries(), this.reader.getPath());
+            }
+            if (parent.object != null) {
+                parent.object.put(parent.name, value);
+            } else {
+                parent.list.add(value);
+            }
+        }
+    }
+
+    private WrapGson newObject() {
+        return this.arena == null ? new WrapGson() : this.arena.newObject();
+    }
+
+    private List<WrapGson> newList() {
+        return this.arena == null ? new ArrayList<WrapGson>() : this.arena.newList();
+    }
+
+    private void countToken() {
+        if (++this.tokens > this.limits.getMaxTokens()) {
+            throw new ParseLimitExceededException.Tokens(this.limits.getMaxTokens(), this.reader.getPath());
+        }
+    }
+
+    private void checkDepth(int depth) {
+        if (depth > this.limits.getMaxDepth()) {
+            throw new ParseLimitExceededException.Depth(this.limits.getMaxDepth(), this.reader.getPath());
+        }
+        if (depth > this.maxDepth) {
+            this.maxDepth = depth;
+        }
+    }
+
+    /**
+     * 读取键、字符串或数字字面量。
+     *
+     * 读取前记录已读取的字符数：{@link JsonReader} 只有在缓冲区中找不到字面量的结尾时才继续读取，
+     * 而每个字符最多占用 {@value #MAX_ESCAPE_LENGTH} 个原始字符，因此读取量超过
+     * {@code MAX_ESCAPE_LENGTH * maxStringLength} 加一个缓冲区后，字面量必然超出限制，无需等到读完。
+     * 未超出该读取量的字面量在读完后按解码后的长度精确检查。
+     */
+    private String nextString(JsonToken token) throws IOException {
+        if (this.counter != null) {
+            this.counter.stringEnd = this.counter.count
+                    + (long) MAX_ESCAPE_LENGTH * this.limits.getMaxStringLength() + READER_BUFFER_SIZE;
+        }
+        String text = token == JsonToken.NAME ? this.reader.nextName() : this.reader.nextString();
+        if (this.counter != null) {
+            this.counter.stringEnd = Long.MAX_VALUE;
+        }
+
+        if (text.length() > this.limits.getMaxStringLength()) {
+            throw stringLengthExceeded();
+        }
+        return text;
+    }
+
+    private ParseLimitExceededException stringLengthExceeded() {
+        return new ParseLimitExceededException.StringLength(this.limits.getMaxStringLength(), this.reader.getPath());
+    }
+
+    /**
+     * 统计读取字符数，供 {@link WrapGsonListener} 使用；读取字面量时读取量超过 {@code stringEnd} 即抛出异常。
+     */
+    private final class CountingReader extends FilterReader {
+        long count;
+        long stringEnd = Long.MAX_VALUE;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                advance(1);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        private void advance(int n) {
+            this.count += n;
+            if (this.count > this.stringEnd) {
+                throw stringLengthExceeded();
+            }
+        }
+    }
+
+    /**
+     * 一个尚未读完的对象或数组。
+     */
+    private static final class Frame {
+        final WrapGson object;
+        final List<WrapGson> list;
+        String name;
+        int entries;
+
+        Frame(WrapGson object) {
+            this.object = object;
+            this.list = null;
+        }
+
+        Frame(List<WrapGson> list) {
+            this.object = null;
+            this.list = list;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.smalltiantian.common;
+
+/**
+ * {@link WrapGson#deepMerge(WrapGson, MergePolicy)} 中两侧均为列表时的合并方式。
+ *
+ * 两侧均为对象时总是逐键递归合并，其余情况总是以后者覆盖前者。
+ */
+public enum MergePolicy {
+    /**
+     * 以后者的列表整体替换前者的列表。
+     */
+    REPLACE,
+
+    /**
+     * 将后者的元素追加到前者的元素之后。
+     */
+    CONCAT,
+
+    /**
+     * 按下标逐个合并：同一下标的元素按相同规则合并，后者多出的元素追加在末尾。
+     */
+    BY_INDEX
+}
@@ -0,0 +1,79 @@
+package com.smalltiantian.common;
+
+/**
+ * 解析时超出 {@link ParseLimits} 中某项限制。
+ *
+ * 每种限制对应一个子类，可以按需分别捕获。
+ *
+ * @see ParseLimits
+ */
+public abstract class ParseLimitExceededException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final long limit;
+    private final String path;
+
+    ParseLimitExceededException(String what, long limit, String path) {
+        super(String.format("%s exceeds limit %d at path %s.", what, limit, path));
+        this.limit = limit;
+        this.path = path;
+    }
+
+    /**
+     * @return 被超出的限制值
+     */
+    public long getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * @return 超出限制时所在的 JSON 路径，如 {@code $.key[0]}
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * 嵌套层数超出 {@link ParseLimits#getMaxDepth()}。
+     */
+    public static final class Depth extends ParseLimitExceededException {
+        private static final long serialVersionUID = 1L;
+
+        Depth(long limit, String path) {
+            super("Nesting depth", limit, path);
+        }
+    }
+
+    /**
+     * 键、字符串或数字字面量长度超出 {@link ParseLimits#getMaxStringLength()}。
+     */
+    public static final class StringLength extends ParseLimitExceededException {
+        private static final long serialVersionUID = 1L;
+
+        StringLength(long limit, String path) {
+            super("String length", limit, path);
+        }
+    }
+
+    /**
+     * 对象或数组的子节点数量超出 {@link ParseLimits#getMaxEntries()}。
+     */
+    public static final class Entries extends ParseLimitExceededException {
+        private static final long serialVersionUID = 1L;
+
+        Entries(long limit, String path) {
+            super("Entry count", limit, path);
+        }
+    }
+
+    /**
+     * 文档 token 总数超出 {@link ParseLimits#getMaxTokens()}。
+     */
+    public static final class Tokens extends ParseLimitExceededException {
+        private static final long serialVersionUID = 1L;
+
+        Tokens(long limit, String path) {
+            super("Token count", limit, path);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.smalltiantian.common;
+
+/**
+ * 解析 JSON 时的资源限制。
+ *
+ * 限制在读取过程中逐个 token 检查，一旦超出立即停止读取并抛出对应的 {@link ParseLimitExceededException}，
+ * 不会等到整个输入读完。用于处理来源不可信的输入，防止过深或过大的数据耗尽栈或堆。
+ *
+ * <pre>
+ * ParseLimits limits = new ParseLimits(64, 64 * 1024, 10000, 1000000);
+ * WrapGson json = WrapGson.fromJson(requestBody, limits);
+ * </pre>
+ *
+ * @see WrapGson#fromJson(Object, ParseLimits)
+ * @see WrapGson#fromJson(java.io.Reader, ParseLimits)
+ */
+public final class ParseLimits {
+    /**
+     * 不做任何限制，{@link WrapGson#fromJson(Object)} 使用此限制。
+     */
+    public static final ParseLimits UNLIMITED = new ParseLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private final int maxDepth;
+    private final int maxStringLength;
+    private final int maxEntries;
+    private final long maxTokens;
+
+    /**
+     * 初始化一组解析限制，所有参数均须大于 0。
+     *
+     * @param maxDepth        对象 / 数组的最大嵌套层数，最外层容器为第 1 层
+     * @param maxStringLength 单个键、字符串或数字字面量的最大字符数
+     * @param maxEntries      单个对象的最大键值对数量，或单个数组的最大元素数量
+     * @param maxTokens       整个文档的最大 token 数量，括号、键与值各计一个
+     * @throws IllegalArgumentException 任一参数小于等于 0
+     */
+    public ParseLimits(int maxDepth, int maxStringLength, int maxEntries, long maxTokens) {
+        checkPositive("maxDepth", maxDepth);
+        checkPositive("maxStringLength", maxStringLength);
+        checkPositive("maxEntries", maxEntries);
+        checkPositive("maxTokens", maxTokens);
+
+        this.maxDepth = maxDepth;
+        this.maxStringLength = maxStringLength;
+        this.maxEntries = maxEntries;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * @return 对象 / 数组的最大嵌套层数
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * @return 单个键、字符串或数字字面量的最大字符数
+     */
+    public int getMaxStringLength() {
+        return this.maxStringLength;
+    }
+
+    /**
+     * @return 单个对象或数组的最大子节点数量
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * @return 整个文档的最大 token 数量
+     */
+    public long getMaxTokens() {
+        return this.maxTokens;
+    }
+
+    private static void checkPositive(String name, long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(String.format("%s must be positive, but was %d.", name, value));
+        }
+    }
+}
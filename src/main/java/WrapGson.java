@@ -1,5 +1,12 @@
 package com.smalltiantian.common;
 
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.ListIterator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
@@ -7,18 +14,10 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSyntaxException;
 import com.google.gson.internal.LinkedTreeMap;
 import com.google.gson.internal.LazilyParsedNumber;
 
 public final class WrapGson {
-    private static final Gson GSON = new Gson();
-
     /**
      * 将任意类型数据转换为 WrapGson。
      *
@@ -26,8 +25,24 @@ public final class WrapGson {
      *
      * @param  value 任意类型数据。
      * @return WrapGson
+     * @see #fromJson(Object, ParseLimits)
      */
     public static final WrapGson fromJson(Object value) {
+        return fromJson(value, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * 在解析限制下将任意类型数据转换为 WrapGson。
+     *
+     * 适用于来源不可信的输入，超出限制时立即停止解析。
+     *
+     * @param  value  任意类型数据。
+     * @param  limits 解析限制
+     * @return WrapGson
+     * @throws ParseLimitExceededException 超出解析限制
+     * @see ParseLimits
+     */
+    public static final WrapGson fromJson(Object value, ParseLimits limits) {
         if (value == null) {
             return null;
         }
@@ -40,13 +55,27 @@ public final class WrapGson {
         } else if (finalObject instanceof String && ((instant = String.valueOf(finalObject)).trim().isEmpty() || instant.equalsIgnoreCase("null"))) {
             json = new WrapGson(finalObject);
         } else {
-            JsonElement element = GSON.fromJson(String.valueOf(finalObject), JsonElement.class);
-            json = jsonElementToWrapGson(element);
+            json = JsonTreeReader.read(new StringReader(String.valueOf(finalObject)), limits, null);
         }
 
         return json;
     }
 
+    /**
+     * 在解析限制下从 {@code Reader} 中流式读取 JSON 并转换为 WrapGson。
+     *
+     * 边读边检查限制，超出限制时剩余输入不会被读取。本方法不会关闭 {@code reader}。
+     *
+     * @param  reader JSON 输入
+     * @param  limits 解析限制
+     * @return WrapGson，输入为空或为 JSON {@code null} 时返回 null。
+     * @throws ParseLimitExceededException 超出解析限制
+     * @see ParseLimits
+     */
+    public static final WrapGson fromJson(Reader reader, ParseLimits limits) {
+        return JsonTreeReader.read(reader, limits, null);
+    }
+
     private final Object value;
 
     private WrapGson(final Object value) {
@@ -117,14 +146,123 @@ public final class WrapGson {
     }
 
     private WrapGson(WrapGson value) {
-        if (value.isProperty()) {
-            this.value = value.value;
-            this.cache = null;
-        } else {
-            this.value = null;
-            this.cache = new LinkedTreeMap<String, WrapGson>();
-            this.cache.putAll(value.cache);
+        long start = WrapGsonMetrics.ENABLED ? System.nanoTime() : 0;
+        this.value = copyValue(value);
+        this.cache = copyCache(value);
+        long nodes = isProperty() ? 1 : this.cache.size();
+        if (value.isArenaNode()) {
+            nodes += detach();
+        }
+        if (WrapGsonMetrics.ENABLED) {
+            WrapGsonMetrics.LISTENER.onCopy(System.nanoTime() - start, nodes);
+        }
+    }
+
+    private WrapGson(Object value, Map<String, WrapGson> cache) {
+        this.value = value;
+        this.cache = cache;
+    }
+
+    /**
+     * 属性值列表由 {@link WrapGsonArena} 分配时拷贝为新的列表，其余属性值直接共享。
+     */
+    private static Object copyValue(WrapGson value) {
+        if (WrapGsonArena.owns(value.value)) {
+            @SuppressWarnings("unchecked")
+            List<WrapGson> list = (List<WrapGson>) value.value;
+            return new ArrayList<WrapGson>(list);
+        }
+        return value.value;
+    }
+
+    private static Map<String, WrapGson> copyCache(WrapGson value) {
+        if (value.cache == null) {
+            return null;
+        }
+        Map<String, WrapGson> cache = new LinkedTreeMap<String, WrapGson>();
+        cache.putAll(value.cache);
+        return cache;
+    }
+
+    /**
+     * @return 当前节点的对象或列表存储是否由 {@link WrapGsonArena} 分配
+     */
+    private boolean isArenaNode() {
+        return WrapGsonArena.owns(this.cache) || WrapGsonArena.owns(this.value);
+    }
+
+    /**
+     * 返回可以在作用域之外使用的节点：{@code node} 由 {@link WrapGsonArena} 分配时返回其堆上的拷贝，否则返回其本身。
+     */
+    private static WrapGson detached(WrapGson node) {
+        if (node == null || !node.isArenaNode()) {
+            return node;
         }
+        WrapGson copy = shallowCopy(node);
+        copy.detach();
+        return copy;
+    }
+
+    private static WrapGson shallowCopy(WrapGson node) {
+        return new WrapGson(copyValue(node), copyCache(node));
+    }
+
+    /**
+     * 将 {@code source} 的映射关系添加到 {@code target} 中，由 {@link WrapGsonArena} 分配的值替换为堆上的拷贝。
+     */
+    private static void putAllDetached(Map<String, WrapGson> target, Map<String, WrapGson> source) {
+        for (Entry<String, WrapGson> entry : source.entrySet())
+            target.put(entry.getKey(), detached(entry.getValue()));
+    }
+
+    /**
+     * 将 {@code source} 的元素追加到 {@code target} 中，由 {@link WrapGsonArena} 分配的元素替换为堆上的拷贝。
+     */
+    private static void addAllDetached(List<WrapGson> target, Object source) {
+        @SuppressWarnings("unchecked")
+        List<WrapGson> elements = (List<WrapGson>) source;
+        for (WrapGson element : elements)
+            target.add(detached(element));
+    }
+
+    /**
+     * 将子树中由 {@link WrapGsonArena} 分配的节点替换为堆上的拷贝，使当前节点在作用域关闭后仍然可用。
+     *
+     * 堆上的节点不会持有作用域分配的子节点，因此只需继续处理新拷贝的节点。
+     *
+     * @return 拷贝的节点数量
+     */
+    private long detach() {
+        long nodes = 0;
+        List<WrapGson> stack = new ArrayList<WrapGson>();
+        stack.add(this);
+        while (!stack.isEmpty()) {
+            WrapGson node = stack.remove(stack.size() - 1);
+            if (node.cache != null) {
+                for (Entry<String, WrapGson> entry : node.cache.entrySet()) {
+                    WrapGson child = entry.getValue();
+                    if (child != null && child.isArenaNode()) {
+                        WrapGson copy = shallowCopy(child);
+                        entry.setValue(copy);
+                        stack.add(copy);
+                        nodes++;
+                    }
+                }
+            } else if (node.value instanceof List) {
+                @SuppressWarnings("unchecked")
+                ListIterator<WrapGson> iterator = ((List<WrapGson>) node.value).listIterator();
+                while (iterator.hasNext()) {
+                    WrapGson child = iterator.next();
+                    if (child != null && child.isArenaNode()) {
+                        WrapGson copy = shallowCopy(child);
+                        iterator.set(copy);
+                        stack.add(copy);
+                        nodes++;
+                    }
+                }
+            }
+        }
+        return nodes;
     }
 
     /**
@@ -132,7 +270,7 @@ public final class WrapGson {
      *
      * 操作前请调用 {@link #isProperty()} 检查是否是一个属性值，如果是 {@code true} 则不能进行 {@code add} 操作。
      *
-     * <strong>程序将会递归对 {@code List} 元素进行类型检查，类型只能为 {@code String Number Boolean List} 中一种，否则会抛出错误。</strong>
+     * <strong>程序将会逐层对 {@code List} 元素进行类型检查，类型只能为 {@code String Number Boolean List} 中一种，否则会抛出错误。</strong>
      * @param  key   将要添加到 WrapGson 中的键
      * @param  value 将要添加到 WrapGson 中的值
      * @return 以前与 key 关联的值，如果没有针对 key 的映射关系，则返回 null。
@@ -140,27 +278,67 @@ public final class WrapGson {
      * @see #isProperty()
      */
     public WrapGson add(String key, List value) {
-        checkListNorm(value);
-
-        String middle = GSON.toJson(value);
-        return add(key, middle);
+        return add(key, listToJson(value));
     }
 
     /**
-     * 确保{@code List} 元素只能为 {@code String Number Boolean List} 中一种。
+     * 确保{@code List} 元素只能为 {@code String Number Boolean List} 中一种，并转为 JSON 字符串。
      *
-     * 将碰到 {@code List} 嵌套 {@code List} 的将循环调用。
+     * 碰到 {@code List} 嵌套 {@code List} 时压入显式栈继续处理，嵌套层数不受线程栈大小限制。
      *
      * @param  list 将要检查的参数。
+     * @return JSON 字符串
      */
-    private void checkListNorm(List list) {
-        for (Object obj : list) {
-            if (obj == null)
+    private static String listToJson(List<?> list) {
+        StringBuilder sb = new StringBuilder();
+        List<Iterator<?>> stack = new ArrayList<Iterator<?>>();
+        sb.append('[');
+        stack.add(list.iterator());
+        while (!stack.isEmpty()) {
+            Iterator<?> iterator = stack.get(stack.size() - 1);
+            if (!iterator.hasNext()) {
+                stack.remove(stack.size() - 1);
+                closeContainer(sb, '[', ']');
+                if (!stack.isEmpty())
+                    sb.append(',');
+                continue;
+            }
+
+            Object obj = iterator.next();
+            if (obj instanceof List) {
+                sb.append('[');
+                stack.add(((List<?>) obj).iterator());
                 continue;
-            else if (obj instanceof List)
-                checkListNorm((List) obj);
-            else if (!(obj instanceof String || obj instanceof Number || obj instanceof Boolean))
+            } else if (obj == null || obj instanceof Boolean) {
+                sb.append(obj);
+            } else if (obj instanceof String) {
+                JsonStringEncoder.encode(sb, (String) obj);
+            } else if (obj instanceof Number) {
+                checkFinite((Number) obj);
+                sb.append(obj);
+            } else {
                 throw new IllegalStateException("Error : Your list element isn't instanceof String || Number || Boolean.");
+            }
+            sb.append(',');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 用结束符替换末尾多余的逗号；容器为空时直接追加结束符。
+     */
+    private static void closeContainer(StringBuilder sb, char open, char close) {
+        int last = sb.length() - 1;
+        if (sb.charAt(last) == open)
+            sb.append(close);
+        else
+            sb.setCharAt(last, close);
+    }
+
+    private static void checkFinite(Number number) {
+        if ((number instanceof Double && (((Double) number).isNaN() || ((Double) number).isInfinite()))
+                || (number instanceof Float && (((Float) number).isNaN() || ((Float) number).isInfinite()))) {
+            throw new IllegalArgumentException(String.format("%s is not a valid double value as per JSON specification.", number));
         }
     }
 
@@ -374,6 +552,106 @@ public final class WrapGson {
         return this.cache.size();
     }
 
+    /**
+     * 将 {@code other} 的所有一级映射关系添加到当前 WrapGson 中，已有的键将被覆盖。
+     *
+     * 与 {@link #add(String, WrapGson)} 不同，本方法不做保护性拷贝，值在两者之间共享，
+     * 之后对共享子节点的更改在两者中均可见。
+     * 由 {@link WrapGsonArena} 分配的对象与列表子节点例外：它们会被拷贝到堆上，作用域关闭后当前 WrapGson 仍然可用。
+     *
+     * 操作前请调用 {@link #isProperty()} 检查是否是一个属性值，如果是 {@code true} 则不能进行 {@code putAll} 操作。
+     *
+     * @param  other 将要添加的映射关系
+     * @see #isProperty()
+     */
+    public void putAll(WrapGson other) {
+        checkMapOperation();
+        other.checkMapOperation();
+
+        putAllDetached(this.cache, other.cache);
+    }
+
+    /**
+     * 将 {@code other} 深度合并到当前 WrapGson 之上，返回合并结果，两者本身均不会被修改。
+     *
+     * 合并规则：
+     * <ul>
+     * <li>两侧均为对象时逐键合并；</li>
+     * <li>两侧均为列表时按 {@code policy} 合并；</li>
+     * <li>其余情况以 {@code other} 的值覆盖，包括 {@code other} 中值为 {@code null} 的键。</li>
+     * </ul>
+     *
+     * 只有两侧都存在且需要合并的节点会新建，其余子节点在结果与输入之间共享而不拷贝，
+     * 之后对共享子节点的更改在两者中均可见。
+     * 由 {@link WrapGsonArena} 分配的对象与列表子节点会被拷贝到堆上，结果在作用域关闭后仍然可用。
+     *
+     * 操作前请调用 {@link #isProperty()} 检查是否是一个属性值，如果是 {@code true} 则不能进行 {@code deepMerge} 操作。
+     *
+     * @param  other  覆盖在上层的数据
+     * @param  policy 列表的合并方式
+     * @return 合并结果
+     * @see MergePolicy
+     */
+    public WrapGson deepMerge(WrapGson other, MergePolicy policy) {
+        checkMapOperation();
+        other.checkMapOperation();
+
+        List<WrapGson[]> stack = new ArrayList<WrapGson[]>();
+        WrapGson result = mergeNode(this, other, policy, stack);
+        while (!stack.isEmpty()) {
+            WrapGson[] task = stack.remove(stack.size() - 1);
+            WrapGson target = task[0];
+            WrapGson source = task[1];
+            if (target.cache != null) {
+                for (Entry<String, WrapGson> entry : source.cache.entrySet()) {
+                    String key = entry.getKey();
+                    target.cache.put(key, mergeNode(target.cache.get(key), entry.getValue(), policy, stack));
+                }
+            } else {
+                @SuppressWarnings("unchecked")
+                List<WrapGson> targetList = (List<WrapGson>) target.value;
+                @SuppressWarnings("unchecked")
+                List<WrapGson> sourceList = (List<WrapGson>) source.value;
+                for (int i = 0; i < sourceList.size(); i++) {
+                    if (i < targetList.size())
+                        targetList.set(i, mergeNode(targetList.get(i), sourceList.get(i), policy, stack));
+                    else
+                        targetList.add(detached(sourceList.get(i)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 合并两个节点。需要继续合并子节点时，新建目标节点并将其与 {@code value} 一同压入 {@code stack}。
+     *
+     * @return 合并后应当放在该位置的节点
+     */
+    private static WrapGson mergeNode(WrapGson base, WrapGson value, MergePolicy policy, List<WrapGson[]> stack) {
+        if (base == null || value == null) {
+            return detached(value);
+        }
+        if (!base.isProperty() && !value.isProperty()) {
+            WrapGson merged = new WrapGson();
+            putAllDetached(merged.cache, base.cache);
+            stack.add(new WrapGson[] {merged, value});
+            return merged;
+        }
+        if (base.value instanceof List && value.value instanceof List && policy != MergePolicy.REPLACE) {
+            List<WrapGson> list = new ArrayList<WrapGson>();
+            addAllDetached(list, base.value);
+            WrapGson merged = new WrapGson(list);
+            if (policy == MergePolicy.CONCAT) {
+                addAllDetached(list, value.value);
+            } else {
+                stack.add(new WrapGson[] {merged, value});
+            }
+            return merged;
+        }
+        return detached(value);
+    }
+
     /**
      * 添加一条 key-value 数据到 WrapGson 中。
      *
@@ -391,104 +669,279 @@ public final class WrapGson {
         return this.cache.put(key, transform);
     }
 
-    private String propertyToJson() {
-        if (this.value instanceof Number || this.value instanceof Boolean) {
-            return String.valueOf(this.value);
-        } else if (this.value instanceof List){
-            @SuppressWarnings("unchecked")
-            List<WrapGson> list = (List<WrapGson>) this.value;
-            StringBuilder sb = new StringBuilder();
-            sb.append("[");
-            for (WrapGson listElement : list) {
-                if (listElement == null)
-                    sb.append(listElement).append(",");
+    /**
+     * 按指定格式将当前 {@code WrapGson} 转为 JSON 字符串。
+     *
+     * 直接遍历内部数据输出，同一线程内重复调用将复用同一个缓冲区。
+     *
+     * @param  format 输出格式
+     * @return JSON 字符串
+     * @throws IllegalStateException {@link JsonFormat#CANONICAL} 格式下遇到无法规范化的数字（如 {@code NaN}）
+     * @see JsonFormat
+     */
+    public String toJson(JsonFormat format) {
+        return serialize(format, false);
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+    /**
+     * 超过此容量的缓冲区用完即丢弃，避免偶发的大文档让线程长期持有大块内存。
+     */
+    private static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>();
+
+    private static final int STATS_NODES = 0;
+    private static final int STATS_DEPTH = 1;
+
+    private static final Comparator<Entry<String, WrapGson>> KEY_ORDER = new Comparator<Entry<String, WrapGson>>() {
+        @Override
+        public int compare(Entry<String, WrapGson> left, Entry<String, WrapGson> right) {
+            return left.getKey().compareTo(right.getKey());
+        }
+    };
+
+    private String serialize(JsonFormat format, boolean plain) {
+        long start = WrapGsonMetrics.ENABLED ? System.nanoTime() : 0;
+        long[] stats = WrapGsonMetrics.ENABLED ? new long[2] : null;
+        StringBuilder sb = BUFFER.get();
+        if (sb == null) {
+            sb = new StringBuilder(DEFAULT_BUFFER_SIZE);
+            BUFFER.set(sb);
+        }
+        sb.setLength(0);
+        write(sb, format, plain, stats);
+        String json = sb.toString();
+        if (sb.capacity() > MAX_REUSED_BUFFER_SIZE) {
+            BUFFER.set(new StringBuilder(DEFAULT_BUFFER_SIZE));
+        }
+        if (WrapGsonMetrics.ENABLED) {
+            WrapGsonMetrics.LISTENER.onSerialize(System.nanoTime() - start, json.length(), stats[STATS_NODES], (int) stats[STATS_DEPTH]);
+        }
+        return json;
+    }
+
+    /**
+     * 使用显式栈遍历当前节点及其所有子节点并输出，嵌套层数不受线程栈大小限制。
+     *
+     * {@code plain} 为 {@code true} 时，属性值列表按 {@code List#toString()} 的格式输出（{@code ", "} 分隔，字符串不加引号），
+     * 列表中的对象仍按 JSON 输出。
+     *
+     * {@code stats} 不为 {@code null} 时，统计输出的节点数与最大嵌套层数。
+     */
+    private void write(StringBuilder sb, JsonFormat format, boolean plain, long[] stats) {
+        List<WriteFrame> stack = new ArrayList<WriteFrame>();
+        WrapGson node = this;
+        while (true) {
+            if (stats != null && node != null) {
+                stats[STATS_NODES]++;
+            }
+            if (node == null) {
+                sb.append("null");
+            } else if (!node.isProperty()) {
+                sb.append('{');
+                stack.add(new WriteFrame(node.entryIterator(format)));
+                plain = false;
+            } else if (node.value instanceof List) {
+                @SuppressWarnings("unchecked")
+                List<WrapGson> list = (List<WrapGson>) node.value;
+                sb.append('[');
+                stack.add(new WriteFrame(list.iterator(), plain));
+            } else {
+                node.writeScalar(sb, format, plain);
+            }
+            if (stats != null && stack.size() > stats[STATS_DEPTH]) {
+                stats[STATS_DEPTH] = stack.size();
+            }
+
+            // 关闭已经输出完的容器，找到下一个待输出的子节点
+            WriteFrame frame;
+            while (true) {
+                if (stack.isEmpty())
+                    return;
+                frame = stack.get(stack.size() - 1);
+                if (frame.hasNext())
+                    break;
+                stack.remove(stack.size() - 1);
+                if (!frame.plain)
+                    writeClose(sb, format, stack.size(), frame.first, frame.entries != null ? '}' : ']');
                 else
-                    sb.append(listElement.toJson()).append(",");
+                    sb.append(']');
+            }
+
+            plain = frame.plain;
+            if (plain) {
+                if (!frame.first)
+                    sb.append(", ");
+                frame.first = false;
+            } else {
+                frame.first = writeSeparator(sb, format, stack.size(), frame.first);
+            }
+            if (frame.entries != null) {
+                Entry<String, WrapGson> entry = frame.entries.next();
+                JsonStringEncoder.encode(sb, entry.getKey());
+                sb.append(format == JsonFormat.PRETTY ? ": " : ":");
+                node = entry.getValue();
+            } else {
+                node = frame.elements.next();
             }
-            sb.setCharAt(sb.length() - 1, ']');
-            return sb.toString();
         }
-        return String.format("\"%s\"", this.value);
     }
 
-    private String toJson() {
-        if (isProperty())
-            return propertyToJson();
+    private Iterator<Entry<String, WrapGson>> entryIterator(JsonFormat format) {
+        if (format != JsonFormat.CANONICAL)
+            return this.cache.entrySet().iterator();
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        for (Entry<String, WrapGson> entry : this.cache.entrySet()) {
-            sb.append("\"").append(entry.getKey()).append("\":");
-            if (entry.getValue() == null)
-                sb.append(entry.getValue()).append(",");
+        List<Entry<String, WrapGson>> entries = new ArrayList<Entry<String, WrapGson>>(this.cache.entrySet());
+        Collections.sort(entries, KEY_ORDER);
+        return entries.iterator();
+    }
+
+    private void writeScalar(StringBuilder sb, JsonFormat format, boolean plain) {
+        if (plain || this.value instanceof Boolean) {
+            sb.append(this.value);
+        } else if (this.value instanceof Number) {
+            if (format == JsonFormat.CANONICAL)
+                writeCanonicalNumber(sb, (Number) this.value);
             else
-                sb.append(entry.getValue().toJson()).append(",");
+                sb.append(this.value);
+        } else {
+            JsonStringEncoder.encode(sb, String.valueOf(this.value));
         }
-        sb.setCharAt(sb.length() - 1, '}');
-        return sb.toString();
     }
 
-    @Override
-    public String toString() {
-        if (isProperty()) {
-            return String.valueOf(this.value);
+    /**
+     * {@link #write(StringBuilder, JsonFormat, boolean, long[])} 中一个正在输出的对象或数组。
+     */
+    private static final class WriteFrame {
+        final Iterator<Entry<String, WrapGson>> entries;
+        final Iterator<WrapGson> elements;
+        final boolean plain;
+        boolean first = true;
+
+        WriteFrame(Iterator<Entry<String, WrapGson>> entries) {
+            this.entries = entries;
+            this.elements = null;
+            this.plain = false;
+        }
+
+        WriteFrame(Iterator<WrapGson> elements, boolean plain) {
+            this.entries = null;
+            this.elements = elements;
+            this.plain = plain;
+        }
+
+        boolean hasNext() {
+            return this.entries != null ? this.entries.hasNext() : this.elements.hasNext();
         }
-        return toJson();
     }
 
     /**
-     * 将 JsonElement 类型转为 WrapGson。
-     *
-     * 方便递归调用。
+     * 在容器元素前输出分隔符，{@link JsonFormat#PRETTY} 格式下同时换行缩进。
      *
-     * @param  element Gson 类型数据
-     * @return WrapGson 数据
+     * @return 固定返回 {@code false}，方便调用方更新 first 标记
      */
-    private static WrapGson jsonElementToWrapGson(JsonElement element) {
-        WrapGson json;
-        if (element.isJsonNull()) {
-            json = null;
-        } else if (element.isJsonObject()) {
-            json = jsonObjectToWrapGson(element);
-        } else if (element.isJsonArray()) {
-            json = jsonArrayToWrapGson(element);
-        } else {
-            json = jsonPrimitiveToWrapGson(element);
-        }
-        return json;
+    private static boolean writeSeparator(StringBuilder sb, JsonFormat format, int depth, boolean first) {
+        if (!first)
+            sb.append(',');
+        if (format == JsonFormat.PRETTY)
+            writeIndent(sb, depth);
+        return false;
     }
 
-    private static WrapGson jsonPrimitiveToWrapGson(JsonElement element) {
-        JsonPrimitive primitive = element.getAsJsonPrimitive();
+    private static void writeClose(StringBuilder sb, JsonFormat format, int depth, boolean empty, char close) {
+        if (format == JsonFormat.PRETTY && !empty)
+            writeIndent(sb, depth);
+        sb.append(close);
+    }
+
+    private static void writeIndent(StringBuilder sb, int depth) {
+        sb.append('\n');
+        for (int i = 0; i < depth; i++)
+            sb.append("  ");
+    }
 
-        if (primitive.isString()) {
-            return new WrapGson(primitive.getAsString());
-        } else if (primitive.isNumber()) {
-            return new WrapGson(primitive.getAsNumber());
-        } else if (primitive.isBoolean()) {
-            return new WrapGson(primitive.getAsBoolean());
+    /**
+     * 按 ECMAScript {@code Number.prototype.toString} 的规则输出数字，但保留全部有效数字，不转换为 {@code double}。
+     *
+     * 记去掉末尾零后的有效数字为 {@code d}（共 {@code k} 位），数值为 {@code 0.d × 10^n}：
+     * <ul>
+     *   <li>{@code k <= n <= 21}：输出 {@code d} 后补 {@code n - k} 个零，如 {@code 1000}</li>
+     *   <li>{@code 0 < n <= 21}：在 {@code d} 的第 {@code n} 位之后插入小数点，如 {@code 1.5}</li>
+     *   <li>{@code -6 < n <= 0}：输出 {@code 0.}、{@code -n} 个零与 {@code d}，如 {@code 0.0001}</li>
+     *   <li>其余：以一位整数的科学计数法输出，指数使用小写 {@code e} 且总带正负号，如 {@code 1.5e+25}、{@code 1e-7}</li>
+     * </ul>
+     * 负数前加 {@code -}，零（包括 {@code -0}）输出为 {@code 0}。
+     */
+    private static void writeCanonicalNumber(StringBuilder sb, Number number) {
+        BigDecimal decimal;
+        try {
+            decimal = new BigDecimal(number.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(String.format("Number('%s') can't be written as canonical json.", number), e);
+        }
+        if (decimal.signum() == 0) {
+            sb.append('0');
+            return;
+        }
+        if (decimal.signum() < 0)
+            sb.append('-');
+
+        decimal = decimal.stripTrailingZeros();
+        String digits = decimal.unscaledValue().abs().toString();
+        int k = digits.length();
+        long n = (long) k - decimal.scale();
+        if (k <= n && n <= 21) {
+            sb.append(digits);
+            for (long i = k; i < n; i++)
+                sb.append('0');
+        } else if (0 < n && n <= 21) {
+            sb.append(digits, 0, (int) n).append('.').append(digits, (int) n, k);
+        } else if (-6 < n && n <= 0) {
+            sb.append("0.");
+            for (long i = n; i < 0; i++)
+                sb.append('0');
+            sb.append(digits);
         } else {
-            return new WrapGson(primitive);
+            sb.append(digits.charAt(0));
+            if (k > 1)
+                sb.append('.').append(digits, 1, k);
+            sb.append('e').append(n > 0 ? '+' : '-').append(Math.abs(n - 1));
         }
     }
 
-    private static WrapGson jsonArrayToWrapGson(JsonElement element) {
-        JsonArray array = element.getAsJsonArray();
-        List<WrapGson> list = new ArrayList<WrapGson>(array.size());
-
-        for (JsonElement arrayElement : array) {
-            list.add(jsonElementToWrapGson(arrayElement));
+    @Override
+    public String toString() {
+        if (this.value instanceof List) {
+            return serialize(JsonFormat.COMPACT, true);
+        } else if (isProperty()) {
+            return String.valueOf(this.value);
         }
-        return new WrapGson(list);
+        return toJson(JsonFormat.COMPACT);
     }
 
-    private static WrapGson jsonObjectToWrapGson(JsonElement element) {
-        WrapGson json = new WrapGson();
-        JsonObject object = element.getAsJsonObject();
-        for (Entry<String, JsonElement> objectEntry : object.entrySet()) {
-            json.add(objectEntry.getKey(), jsonElementToWrapGson(objectEntry.getValue()));
-        }
-        return json;
+    /**
+     * 创建一个属性值节点，不做任何转换，供解析器使用。
+     */
+    static WrapGson newProperty(Object value) {
+        return new WrapGson(value);
+    }
+
+    /**
+     * 创建一个使用指定存储的对象节点，供 {@link WrapGsonArena} 使用。
+     */
+    static WrapGson newObject(Map<String, WrapGson> cache) {
+        return new WrapGson(null, cache);
+    }
+
+    Object rawValue() {
+        return this.value;
+    }
+
+    /**
+     * 不做保护性拷贝地添加键值，供解析器使用。
+     */
+    void put(String key, WrapGson value) {
+        this.cache.put(key, value);
     }
 
     /**
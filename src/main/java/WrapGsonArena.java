@@ -0,0 +1,313 @@
+package com.smalltiantian.common;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.google.gson.internal.LinkedTreeMap;
+
+/**
+ * 为短生命周期的 WrapGson 回收容器的作用域。
+ *
+ * 在作用域内通过 {@link #fromJson(String)} 解析得到的对象与列表所使用的 {@code LinkedTreeMap} 与 {@code ArrayList}
+ * 在 {@link #close()} 时统一回收，同一线程下一次打开作用域时复用。
+ *
+ * 复用仅限于容器本身：{@code LinkedTreeMap} 的表头与 {@code ArrayList} 的内部数组。
+ * WrapGson 节点、{@code LinkedTreeMap} 的每个条目以及每个容器在作用域内的访问视图每次解析都会新建，
+ * 因此分配量只会少量下降，例如 {@code WrapGsonArenaBenchmark} 中 200 条记录的文档约减少 12%。
+ * 复用的容器数量通过 {@link WrapGsonListener#onParse} 的 {@code reusedContainers} 报告。
+ *
+ * <pre>
+ * try (WrapGsonArena arena = WrapGsonArena.open()) {
+ *     WrapGson request = arena.fromJson(body);
+ *     String id = request.getAsString("id");
+ * }
+ * </pre>
+ *
+ * <strong>注意：作用域关闭后不能再使用其中解析得到的对象与列表节点，否则会抛出 {@code IllegalStateException}；
+ * 关闭的作用域也不能再次使用。需要保留的数据请在关闭前取出，或通过 {@link WrapGson#add(String, WrapGson)} /
+ * {@link WrapGson#fromJson(Object)} 拷贝到作用域之外。</strong>
+ *
+ * 作用域只能在打开它的线程中使用。
+ */
+public final class WrapGsonArena implements Closeable {
+    /**
+     * 每种容器最多保留的数量，避免偶发的大文档让线程长期持有大量内存。
+     */
+    private static final int MAX_POOLED = 64 * 1024;
+    /**
+     * 超过此长度的列表不再回收，{@code ArrayList#clear()} 不会缩小其内部数组。
+     */
+    private static final int MAX_POOLED_LIST_SIZE = 1024;
+
+    private static final ThreadLocal<Pool> POOL = new ThreadLocal<Pool>();
+
+    private final Pool pool;
+    private final List<LinkedTreeMap<String, WrapGson>> allocatedMaps = new ArrayList<LinkedTreeMap<String, WrapGson>>();
+    private final List<ArrayList<WrapGson>> allocatedLists = new ArrayList<ArrayList<WrapGson>>();
+
+    private Thread owner;
+    private long reused;
+
+    private WrapGsonArena(Pool pool) {
+        this.pool = pool;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * 在当前线程中打开一个作用域。
+     *
+     * 每次调用都返回新的作用域。当前线程已有打开的作用域时，新作用域回收的容器不会被后续作用域复用。
+     *
+     * @return 已打开的作用域
+     */
+    public static WrapGsonArena open() {
+        Pool pool = POOL.get();
+        if (pool == null) {
+            pool = new Pool();
+            POOL.set(pool);
+        } else if (pool.inUse) {
+            pool = new Pool();
+        }
+        pool.inUse = true;
+        return new WrapGsonArena(pool);
+    }
+
+    /**
+     * 在作用域内解析 JSON。
+     *
+     * @param  json JSON 字符串
+     * @return WrapGson，JSON {@code null} 或空输入返回 null。
+     * @throws IllegalStateException 作用域已关闭或不在打开它的线程中调用
+     * @see WrapGson#fromJson(Object)
+     */
+    public WrapGson fromJson(String json) {
+        return fromJson(new StringReader(json), ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * 在作用域内按解析限制解析 JSON。
+     *
+     * @param  json   JSON 字符串
+     * @param  limits 解析限制
+     * @return WrapGson，JSON {@code null} 或空输入返回 null。
+     * @throws IllegalStateException 作用域已关闭或不在打开它的线程中调用
+     * @throws ParseLimitExceededException 超出解析限制
+     * @see WrapGson#fromJson(Object, ParseLimits)
+     */
+    public WrapGson fromJson(String json, ParseLimits limits) {
+        return fromJson(new StringReader(json), limits);
+    }
+
+    /**
+     * 在作用域内按解析限制从 {@code Reader} 中流式读取 JSON。本方法不会关闭 {@code reader}。
+     *
+     * @param  reader JSON 输入
+     * @param  limits 解析限制
+     * @return WrapGson，JSON {@code null} 或空输入返回 null。
+     * @throws IllegalStateException 作用域已关闭或不在打开它的线程中调用
+     * @throws ParseLimitExceededException 超出解析限制
+     * @see WrapGson#fromJson(Reader, ParseLimits)
+     */
+    public WrapGson fromJson(Reader reader, ParseLimits limits) {
+        checkOwner();
+
+        return JsonTreeReader.read(reader, limits, this);
+    }
+
+    /**
+     * 关闭作用域并回收其中分配的所有容器。重复调用不做任何事。
+     *
+     * @throws IllegalStateException 不在打开它的线程中调用
+     */
+    @Override
+    public void close() {
+        if (this.owner == null) {
+            return;
+        }
+        checkOwner();
+
+        this.owner = null;
+        for (LinkedTreeMap<String, WrapGson> map : this.allocatedMaps) {
+            if (this.pool.freeMaps.size() >= MAX_POOLED) {
+                break;
+            }
+            map.clear();
+            this.pool.freeMaps.add(map);
+        }
+        for (ArrayList<WrapGson> list : this.allocatedLists) {
+            if (this.pool.freeLists.size() >= MAX_POOLED) {
+                break;
+            }
+            if (list.size() <= MAX_POOLED_LIST_SIZE) {
+                list.clear();
+                this.pool.freeLists.add(list);
+            }
+        }
+        this.allocatedMaps.clear();
+        this.allocatedLists.clear();
+        this.pool.inUse = false;
+    }
+
+    /**
+     * @return 自作用域打开以来复用的容器数量
+     */
+    long reused() {
+        return this.reused;
+    }
+
+    WrapGson newObject() {
+        LinkedTreeMap<String, WrapGson> map;
+        if (this.pool.freeMaps.isEmpty()) {
+            map = new LinkedTreeMap<String, WrapGson>();
+        } else {
+            map = this.pool.freeMaps.remove(this.pool.freeMaps.size() - 1);
+            this.reused++;
+        }
+        this.allocatedMaps.add(map);
+        return WrapGson.newObject(new ArenaMap(this, map));
+    }
+
+    List<WrapGson> newList() {
+        ArrayList<WrapGson> list;
+        if (this.pool.freeLists.isEmpty()) {
+            list = new ArrayList<WrapGson>();
+        } else {
+            list = this.pool.freeLists.remove(this.pool.freeLists.size() - 1);
+            this.reused++;
+        }
+        this.allocatedLists.add(list);
+        return new ArenaList(this, list);
+    }
+
+    /**
+     * @return {@code storage} 是否是作用域分配的对象或列表存储
+     */
+    static boolean owns(Object storage) {
+        return storage instanceof ArenaMap || storage instanceof ArenaList;
+    }
+
+    private void checkOwner() {
+        if (this.owner == null) {
+            throw new IllegalStateException("This arena has been closed.");
+        }
+        if (this.owner != Thread.currentThread()) {
+            throw new IllegalStateException("This arena can only be used by the thread that opened it.");
+        }
+    }
+
+    private void checkReleased() {
+        if (this.owner == null) {
+            throw new IllegalStateException("This WrapGson has been released with its arena.");
+        }
+    }
+
+    /**
+     * 一个线程中可以复用的容器。
+     */
+    private static final class Pool {
+        final List<LinkedTreeMap<String, WrapGson>> freeMaps = new ArrayList<LinkedTreeMap<String, WrapGson>>();
+        final List<ArrayList<WrapGson>> freeLists = new ArrayList<ArrayList<WrapGson>>();
+        boolean inUse;
+    }
+
+    /**
+     * 作用域分配的对象存储，作用域关闭后任何访问都会抛出异常，不会读到复用后的内容。
+     */
+    private static final class ArenaMap extends AbstractMap<String, WrapGson> {
+        private final WrapGsonArena arena;
+        private final LinkedTreeMap<String, WrapGson> map;
+
+        ArenaMap(WrapGsonArena arena, LinkedTreeMap<String, WrapGson> map) {
+            this.arena = arena;
+            this.map = map;
+        }
+
+        @Override
+        public WrapGson get(Object key) {
+            this.arena.checkReleased();
+            return this.map.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            this.arena.checkReleased();
+            return this.map.containsKey(key);
+        }
+
+        @Override
+        public WrapGson put(String key, WrapGson value) {
+            this.arena.checkReleased();
+            return this.map.put(key, value);
+        }
+
+        @Override
+        public WrapGson remove(Object key) {
+            this.arena.checkReleased();
+            return this.map.remove(key);
+        }
+
+        @Override
+        public int size() {
+            this.arena.checkReleased();
+            return this.map.size();
+        }
+
+        @Override
+        public Set<Entry<String, WrapGson>> entrySet() {
+            this.arena.checkReleased();
+            return this.map.entrySet();
+        }
+    }
+
+    /**
+     * 作用域分配的列表存储，作用域关闭后任何访问都会抛出异常，不会读到复用后的内容。
+     */
+    private static final class ArenaList extends AbstractList<WrapGson> implements RandomAccess {
+        private final WrapGsonArena arena;
+        private final ArrayList<WrapGson> list;
+
+        ArenaList(WrapGsonArena arena, ArrayList<WrapGson> list) {
+            this.arena = arena;
+            this.list = list;
+        }
+
+        @Override
+        public WrapGson get(int index) {
+            this.arena.checkReleased();
+            return this.list.get(index);
+        }
+
+        @Override
+        public WrapGson set(int index, WrapGson element) {
+            this.arena.checkReleased();
+            return this.list.set(index, element);
+        }
+
+        @Override
+        public void add(int index, WrapGson element) {
+            this.arena.checkReleased();
+            this.list.add(index, element);
+            this.modCount++;
+        }
+
+        @Override
+        public WrapGson remove(int index) {
+            this.arena.checkReleased();
+            this.modCount++;
+            return this.list.remove(index);
+        }
+
+        @Override
+        public int size() {
+            this.arena.checkReleased();
+            return this.list.size();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.smalltiantian.common;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 列表属性的二级索引：按元素中某个字段的值查找元素，无需逐个遍历，也不会拷贝列表。
+ *
+ * <pre>
+ * WrapGsonIndex byId = WrapGsonIndex.hash(json, "records", "id");
+ * WrapGson record = byId.first(42);
+ *
+ * WrapGsonIndex byPrice = WrapGsonIndex.sorted(json, "records", "detail.price");
+ * List&lt;WrapGson&gt; cheap = byPrice.range(null, 100);
+ * </pre>
+ *
+ * 字段路径以 {@code .} 分隔逐级查找对象中的键；路径上不是对象、字段不存在、或字段值为 {@code null}、对象、列表的元素不会被索引。
+ * 字段值按 JSON 类型比较：数字按数值比较（{@code 1}、{@code 1.0} 与 {@code 1L} 相等），字符串与布尔值按值比较，
+ * 不同类型的值互不相等；有序索引中布尔值排在数字之前，数字排在字符串之前。
+ *
+ * 父节点中 {@code listKey} 对应的节点被替换或移除后索引自动失效，下次查找时重建；父节点中其他键的修改不影响索引。
+ * <strong>注意：直接修改列表或列表中的元素不会使索引失效。</strong>
+ */
+public final class WrapGsonIndex {
+    private static final Comparator<Object> KEY_ORDER = new Comparator<Object>() {
+        @Override
+        public int compare(Object left, Object right) {
+            int rank = rank(left) - rank(right);
+            if (rank != 0) {
+                return rank;
+            }
+            @SuppressWarnings("unchecked")
+            Comparable<Object> comparable = (Comparable<Object>) left;
+            return comparable.compareTo(right);
+        }
+
+        private int rank(Object key) {
+            return key instanceof Boolean ? 0 : key instanceof BigDecimal ? 1 : 2;
+        }
+    };
+
+    private final WrapGson parent;
+    private final String listKey;
+    private final String[] path;
+    private final boolean sorted;
+
+    private Map<Object, List<WrapGson>> index;
+    /**
+     * 建立索引时 {@code listKey} 对应的节点。
+     */
+    private WrapGson indexed;
+
+    private WrapGsonIndex(WrapGson parent, String listKey, String fieldPath, boolean sorted) {
+        if (parent.isProperty()) {
+            throw new UnsupportedOperationException("This is a property.");
+        }
+        this.parent = parent;
+        this.listKey = listKey;
+        this.path = fieldPath.split("\\.");
+        this.sorted = sorted;
+        rebuild();
+    }
+
+    /**
+     * 建立只支持等值查找的哈希索引，查找耗时 O(1)。
+     *
+     * @param  parent    列表所在的 WrapGson
+     * @param  listKey   列表对应的键
+     * @param  fieldPath 元素中被索引字段的路径，以 {@code .} 分隔
+     * @return 索引
+     * @throws UnsupportedOperationException {@code parent} 是一个属性值
+     * @throws IllegalStateException {@code listKey} 对应的值不是列表
+     */
+    public static WrapGsonIndex hash(WrapGson parent, String listKey, String fieldPath) {
+        return new WrapGsonIndex(parent, listKey, fieldPath, false);
+    }
+
+    /**
+     * 建立同时支持等值查找与范围查找的有序索引，查找耗时 O(log n)。
+     *
+     * @param  parent    列表所在的 WrapGson
+     * @param  listKey   列表对应的键
+     * @param  fieldPath 元素中被索引字段的路径，以 {@code .} 分隔
+     * @return 索引
+     * @throws UnsupportedOperationException {@code parent} 是一个属性值
+     * @throws IllegalStateException {@code listKey} 对应的值不是列表
+     */
+    public static WrapGsonIndex sorted(WrapGson parent, String listKey, String fieldPath) {
+        return new WrapGsonIndex(parent, listKey, fieldPath, true);
+    }
+
+    /**
+     * 查找字段值等于 {@code value} 的所有元素，按其在列表中的顺序排列。
+     *
+     * @param  value 字段值，类型为 {@code String Number Boolean} 中一种
+     * @return 不可修改的元素列表，没有匹配元素时为空列表
+     * @throws IllegalStateException 索引重建时 {@code listKey} 对应的值不是列表
+     */
+    public List<WrapGson> get(Object value) {
+        checkModified();
+
+        Object key = toKey(value);
+        List<WrapGson> elements = key == null ? null : this.index.get(key);
+        return elements == null ? Collections.<WrapGson>emptyList() : Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * 查找字段值等于 {@code value} 的第一个元素。
+     *
+     * @param  value 字段值，类型为 {@code String Number Boolean} 中一种
+     * @return 第一个匹配的元素，没有匹配元素时返回 null。
+     * @throws IllegalStateException 索引重建时 {@code listKey} 对应的值不是列表
+     */
+    public WrapGson first(Object value) {
+        List<WrapGson> elements = get(value);
+        return elements.isEmpty() ? null : elements.get(0);
+    }
+
+    /**
+     * 查找字段值在 {@code [from, to)} 之间的所有元素，按字段值升序排列，字段值相同的按其在列表中的顺序排列。
+     * {@code from} 不小于 {@code to} 时区间为空，返回空列表。
+     *
+     * 只有 {@link #sorted(WrapGson, String, String)} 建立的索引支持此操作。
+     *
+     * @param  from 下界（包含），为 {@code null} 时不限
+     * @param  to   上界（不包含），为 {@code null} 时不限
+     * @return 元素列表
+     * @throws UnsupportedOperationException 当前索引是哈希索引
+     * @throws IllegalArgumentException {@code from} 或 {@code to} 的类型不是 {@code String Number Boolean} 中一种
+     * @throws IllegalStateException 索引重建时 {@code listKey} 对应的值不是列表
+     */
+    public List<WrapGson> range(Object from, Object to) {
+        if (!this.sorted) {
+            throw new UnsupportedOperationException("This is a hash index.");
+        }
+        checkModified();
+
+        Object fromKey = from == null ? null : requireKey(from);
+        Object toKey = to == null ? null : requireKey(to);
+        if (fromKey != null && toKey != null && KEY_ORDER.compare(fromKey, toKey) >= 0) {
+            return new ArrayList<WrapGson>();
+        }
+
+        NavigableMap<Object, List<WrapGson>> map = (NavigableMap<Object, List<WrapGson>>) this.index;
+        if (fromKey != null) {
+            map = map.tailMap(fromKey, true);
+        }
+        if (toKey != null) {
+            map = map.headMap(toKey, false);
+        }
+
+        List<WrapGson> result = new ArrayList<WrapGson>();
+        for (List<WrapGson> elements : map.values()) {
+            result.addAll(elements);
+        }
+        return result;
+    }
+
+    private void checkModified() {
+        if (this.parent.get(this.listKey) != this.indexed) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        Map<Object, List<WrapGson>> index = this.sorted
+                ? new TreeMap<Object, List<WrapGson>>(KEY_ORDER)
+                : new HashMap<Object, List<WrapGson>>();
+
+        WrapGson property = this.parent.get(this.listKey);
+        if (property != null) {
+            if (!(property.rawValue() instanceof List)) {
+                throw new IllegalStateException(String.format("Property('%s') isn't a list.", this.listKey));
+            }
+            @SuppressWarnings("unchecked")
+            List<WrapGson> list = (List<WrapGson>) property.rawValue();
+            for (WrapGson element : list) {
+                Object key = toKey(field(element));
+                if (key == null) {
+                    continue;
+                }
+                List<WrapGson> elements = index.get(key);
+                if (elements == null) {
+                    elements = new ArrayList<WrapGson>(1);
+                    index.put(key, elements);
+                }
+                elements.add(element);
+            }
+        }
+
+        this.index = index;
+        this.indexed = property;
+    }
+
+    private WrapGson field(WrapGson element) {
+        WrapGson node = element;
+        for (String segment : this.path) {
+            if (node == null || node.isProperty()) {
+                return null;
+            }
+            node = node.get(segment);
+        }
+        return node;
+    }
+
+    /**
+     * 将字段值转为索引的键。数字统一转为去掉末尾零的 {@code BigDecimal}，使数值相等的数字对应同一个键。
+     *
+     * @return 键，无法索引的值返回 null。
+     */
+    private static Object toKey(Object value) {
+        if (value instanceof WrapGson) {
+            WrapGson property = (WrapGson) value;
+            if (!property.isProperty() || property.rawValue() instanceof List) {
+                return null;
+            }
+            value = property.rawValue();
+        }
+
+        if (value instanceof String || value instanceof Boolean) {
+            return value;
+        } else if (value instanceof Number) {
+            try {
+                BigDecimal decimal = new BigDecimal(value.toString());
+                return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Object requireKey(Object value) {
+        Object key = toKey(value);
+        if (key == null) {
+            throw new IllegalArgumentException(String.format("Value('%s') can't be used as an index key.", value));
+        }
+        return key;
+    }
+}
@@ -0,0 +1,45 @@
+package com.smalltiantian.common;
+
+/**
+ * 监听 WrapGson 的解析、序列化与拷贝操作，用于收集耗时和数据规模等指标。
+ *
+ * 实现类通过 {@link java.util.ServiceLoader} 加载：在 {@code META-INF/services/com.smalltiantian.common.WrapGsonListener}
+ * 中写入实现类的全限定名即可，实现类需要有 {@code public} 无参构造方法。存在多个实现时依次通知。
+ *
+ * 监听器在类加载时确定，之后不可更改；没有任何实现时不会进行计时和计数，对调用方没有额外开销。
+ *
+ * 回调在执行操作的线程中同步调用，实现类必须线程安全且尽量轻量。
+ *
+ * @see WrapGsonMetrics
+ * @see WrapGsonStats
+ */
+public interface WrapGsonListener {
+    /**
+     * 一次 JSON 解析完成。
+     *
+     * @param nanos            耗时，单位纳秒
+     * @param inputChars       读取的字符数
+     * @param nodes            结果中的节点数量，不含 JSON {@code null}
+     * @param reusedContainers 本次解析中复用了 {@link WrapGsonArena} 回收存储的对象 / 列表数量，不使用作用域时为 0
+     * @param maxDepth         对象 / 数组的最大嵌套层数
+     */
+    void onParse(long nanos, long inputChars, long nodes, long reusedContainers, int maxDepth);
+
+    /**
+     * 一次序列化完成。
+     *
+     * @param nanos       耗时，单位纳秒
+     * @param outputChars 输出的字符数
+     * @param nodes       输出的节点数量，不含 JSON {@code null}
+     * @param maxDepth    对象 / 数组的最大嵌套层数
+     */
+    void onSerialize(long nanos, long outputChars, long nodes, int maxDepth);
+
+    /**
+     * 一次保护性拷贝完成。
+     *
+     * @param nanos 耗时，单位纳秒
+     * @param nodes 拷贝的节点引用数量
+     */
+    void onCopy(long nanos, long nodes);
+}
@@ -0,0 +1,102 @@
+package com.smalltiantian.common;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.ServiceLoader;
+
+/**
+ * 持有通过 {@link ServiceLoader} 加载的 {@link WrapGsonListener}。
+ *
+ * <pre>
+ * WrapGsonListener listener = WrapGsonMetrics.getListener();
+ * if (listener instanceof WrapGsonStats) {
+ *     long[] histogram = ((WrapGsonStats) listener).getParse().getLatencyHistogram();
+ * }
+ * </pre>
+ */
+public final class WrapGsonMetrics {
+    /**
+     * 当前生效的监听器，没有任何实现时为不做任何事的监听器。
+     */
+    static final WrapGsonListener LISTENER;
+    /**
+     * 是否存在监听器。为 {@code false} 时各调用点不会计时，JIT 会直接消除相关代码。
+     */
+    static final boolean ENABLED;
+
+    static {
+        List<WrapGsonListener> listeners = new ArrayList<WrapGsonListener>();
+        for (WrapGsonListener listener : ServiceLoader.load(WrapGsonListener.class)) {
+            listeners.add(listener);
+        }
+
+        if (listeners.isEmpty()) {
+            LISTENER = new NoopListener();
+        } else if (listeners.size() == 1) {
+            LISTENER = listeners.get(0);
+        } else {
+            LISTENER = new CompositeListener(listeners.toArray(new WrapGsonListener[listeners.size()]));
+        }
+        ENABLED = !listeners.isEmpty();
+    }
+
+    private WrapGsonMetrics() {
+    }
+
+    /**
+     * @return 当前生效的监听器；存在多个实现时返回组合后的监听器。
+     */
+    public static WrapGsonListener getListener() {
+        return LISTENER;
+    }
+
+    /**
+     * @return 是否存在通过 {@link ServiceLoader} 加载的监听器。
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    private static final class NoopListener implements WrapGsonListener {
+        @Override
+        public void onParse(long nanos, long inputChars, long nodes, long reusedContainers, int maxDepth) {
+        }
+
+        @Override
+        public void onSerialize(long nanos, long outputChars, long nodes, int maxDepth) {
+        }
+
+        @Override
+        public void onCopy(long nanos, long nodes) {
+        }
+    }
+
+    private static final class CompositeListener implements WrapGsonListener {
+        private final WrapGsonListener[] listeners;
+
+        CompositeListener(WrapGsonListener[] listeners) {
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void onParse(long nanos, long inputChars, long nodes, long reusedContainers, int maxDepth) {
+            for (WrapGsonListener listener : this.listeners) {
+                listener.onParse(nanos, inputChars, nodes, reusedContainers, maxDepth);
+            }
+        }
+
+        @Override
+        public void onSerialize(long nanos, long outputChars, long nodes, int maxDepth) {
+            for (WrapGsonListener listener : this.listeners) {
+                listener.onSerialize(nanos, outputChars, nodes, maxDepth);
+            }
+        }
+
+        @Override
+        public void onCopy(long nanos, long nodes) {
+            for (WrapGsonListener listener : this.listeners) {
+                listener.onCopy(nanos, nodes);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.smalltiantian.common;
+
+/**
+ * 按需推送 WrapGson 的发布者，接口形式与 Java 9 的 {@code java.util.concurrent.Flow} 保持一致。
+ *
+ * 本项目需要兼容 Java 7，因此没有直接使用 {@code Flow}；在 Java 9+ 中可以用几行代码将其适配为
+ * {@code Flow.Publisher<WrapGson>}。
+ *
+ * 与 {@code Flow} 不同的是，{@link Subscriber#onNext(WrapGson)} 可能收到 {@code null}，表示 JSON {@code null}，
+ * 与 {@link WrapGson#fromJson(Object)} 的返回值保持一致。
+ *
+ * @see WrapGsonStreamParser
+ */
+public interface WrapGsonPublisher {
+    /**
+     * 添加订阅者。
+     *
+     * @param subscriber 订阅者
+     */
+    void subscribe(Subscriber subscriber);
+
+    /**
+     * 订阅者，各方法不会被并发调用。
+     */
+    interface Subscriber {
+        /**
+         * 订阅成功，在其他任何方法之前调用。
+         *
+         * @param subscription 用于请求数据或取消订阅
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * 收到一个数据，调用次数不会超过已请求的数量。
+         *
+         * @param item 数据，JSON {@code null} 时为 {@code null}
+         */
+        void onNext(WrapGson item);
+
+        /**
+         * 出现错误，之后不会再调用任何方法。
+         *
+         * @param throwable 错误
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * 所有数据已推送完毕，之后不会再调用任何方法。
+         */
+        void onComplete();
+    }
+
+    /**
+     * 订阅关系。
+     */
+    interface Subscription {
+        /**
+         * 请求再推送 {@code n} 个数据。
+         *
+         * @param n 请求数量，必须大于 0，否则订阅者会收到 {@code IllegalArgumentException}
+         */
+        void request(long n);
+
+        /**
+         * 取消订阅，之后不再推送任何数据。
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,151 @@
+package com.smalltiantian.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按操作类型汇总耗时直方图与数据规模的 {@link WrapGsonListener} 实现。
+ *
+ * 在 {@code META-INF/services/com.smalltiantian.common.WrapGsonListener} 中注册本类后，
+ * 通过 {@link WrapGsonMetrics#getListener()} 取得实例并定期读取各项指标。
+ *
+ * 耗时直方图按 2 的幂分桶：下标为 {@code i} 的桶统计耗时在 {@code [2^(i-1), 2^i)} 纳秒之间的调用次数，
+ * 下标 0 统计耗时为 0 的调用。
+ */
+public final class WrapGsonStats implements WrapGsonListener {
+    private final Operation parse = new Operation();
+    private final Operation serialize = new Operation();
+    private final Operation copy = new Operation();
+
+    @Override
+    public void onParse(long nanos, long inputChars, long nodes, long reusedContainers, int maxDepth) {
+        this.parse.record(nanos, inputChars, nodes, reusedContainers, maxDepth);
+    }
+
+    @Override
+    public void onSerialize(long nanos, long outputChars, long nodes, int maxDepth) {
+        this.serialize.record(nanos, outputChars, nodes, 0, maxDepth);
+    }
+
+    @Override
+    public void onCopy(long nanos, long nodes) {
+        this.copy.record(nanos, 0, nodes, 0, 0);
+    }
+
+    /**
+     * @return 解析操作的指标
+     */
+    public Operation getParse() {
+        return this.parse;
+    }
+
+    /**
+     * @return 序列化操作的指标，字符数为输出字符数
+     */
+    public Operation getSerialize() {
+        return this.serialize;
+    }
+
+    /**
+     * @return 保护性拷贝操作的指标，字符数恒为 0
+     */
+    public Operation getCopy() {
+        return this.copy;
+    }
+
+    /**
+     * 一类操作的累计指标，所有方法均线程安全。
+     */
+    public static final class Operation {
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong totalChars = new AtomicLong();
+        private final AtomicLong maxChars = new AtomicLong();
+        private final AtomicLong totalNodes = new AtomicLong();
+        private final AtomicLong maxNodes = new AtomicLong();
+        private final AtomicLong totalReusedContainers = new AtomicLong();
+        private final AtomicLong maxDepth = new AtomicLong();
+
+        private Operation() {
+        }
+
+        void record(long nanos, long chars, long nodes, long reusedContainers, int depth) {
+            this.latency.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos))));
+            this.calls.incrementAndGet();
+            this.totalChars.addAndGet(chars);
+            updateMax(this.maxChars, chars);
+            this.totalNodes.addAndGet(nodes);
+            updateMax(this.maxNodes, nodes);
+            this.totalReusedContainers.addAndGet(reusedContainers);
+            updateMax(this.maxDepth, depth);
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            }
+        }
+
+        /**
+         * @return 耗时直方图的快照
+         */
+        public long[] getLatencyHistogram() {
+            long[] histogram = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = this.latency.get(i);
+            }
+            return histogram;
+        }
+
+        /**
+         * @return 调用次数
+         */
+        public long getCalls() {
+            return this.calls.get();
+        }
+
+        /**
+         * @return 累计字符数
+         */
+        public long getTotalChars() {
+            return this.totalChars.get();
+        }
+
+        /**
+         * @return 单次调用的最大字符数
+         */
+        public long getMaxChars() {
+            return this.maxChars.get();
+        }
+
+        /**
+         * @return 累计节点数
+         */
+        public long getTotalNodes() {
+            return this.totalNodes.get();
+        }
+
+        /**
+         * @return 单次调用的最大节点数
+         */
+        public long getMaxNodes() {
+            return this.maxNodes.get();
+        }
+
+        /**
+         * @return 累计复用了 {@link WrapGsonArena} 回收存储的对象 / 列表数量，仅解析操作统计，其他操作恒为 0
+         */
+        public long getTotalReusedContainers() {
+            return this.totalReusedContainers.get();
+        }
+
+        /**
+         * @return 单次调用的最大嵌套层数
+         */
+        public long getMaxDepth() {
+            return this.maxDepth.get();
+        }
+    }
+}
@@ -0,0 +1,723 @@
+package com.smalltiantian.common;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.ArrayList;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.LazilyParsedNumber;
+
+/**
+ * 推送式的增量 JSON 解析器，适用于分块到达的 UTF-8 请求体。
+ *
+ * 每收到一块数据即解析已完整的 token 并构建 WrapGson，无需先将整个请求体缓存为 {@code String}。
+ * 顶层为数组时，每个元素解析完成后立即推送给订阅者；顶层为其他值时，整个值解析完成后推送一次。
+ *
+ * <pre>
+ * WrapGsonStreamParser parser = new WrapGsonStreamParser(limits);
+ * parser.subscribe(subscriber);
+ * // 每收到一块数据
+ * if (!parser.feed(chunk)) {
+ *     // 订阅者处理不过来，暂停读取，直到 onReady 回调
+ * }
+ * // 请求体结束
+ * parser.finish();
+ * </pre>
+ *
+ * 解析按 <a href="https://tools.ietf.org/html/rfc8259">RFC 8259</a> 严格进行，
+ * 不支持 {@link WrapGson#fromJson(Object)} 所用的宽松模式。
+ * 出现语法错误时抛出 {@code JsonSyntaxException}，超出限制时抛出 {@link ParseLimitExceededException}，
+ * 同时通知订阅者 {@code onError}，之后解析器不可再用。
+ *
+ * 所有方法均线程安全，订阅者的回调在调用 {@link #feed(ByteBuffer)}、{@link #finish()} 或
+ * {@link WrapGsonPublisher.Subscription#request(long)} 的线程中同步执行。
+ */
+public final class WrapGsonStreamParser implements WrapGsonPublisher {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * {@code ArrayDeque} 不能存放 {@code null}，用此对象代表 JSON {@code null}。
+     */
+    private static final Object NULL = new Object();
+
+    private static final int LEX_NONE = 0;
+    private static final int LEX_STRING = 1;
+    private static final int LEX_ESCAPE = 2;
+    private static final int LEX_UNICODE = 3;
+    private static final int LEX_NUMBER = 4;
+    private static final int LEX_LITERAL = 5;
+
+    private static final int TOP_VALUE = 0;
+    private static final int TOP_END = 1;
+    private static final int OBJECT_KEY_OR_END = 2;
+    private static final int OBJECT_KEY = 3;
+    private static final int OBJECT_COLON = 4;
+    private static final int OBJECT_VALUE = 5;
+    private static final int OBJECT_COMMA_OR_END = 6;
+    private static final int ARRAY_VALUE_OR_END = 7;
+    private static final int ARRAY_VALUE = 8;
+    private static final int ARRAY_COMMA_OR_END = 9;
+
+    private final ParseLimits limits;
+    private final CharsetDecoder decoder = UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final ByteBuffer leftover = ByteBuffer.allocate(8);
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+
+    private int lexState = LEX_NONE;
+    private final StringBuilder token = new StringBuilder();
+    private boolean tokenIsKey;
+    private int unicodeDigits;
+    private int unicodeValue;
+
+    private final List<Frame> stack = new ArrayList<Frame>();
+    private int topState = TOP_VALUE;
+
+    private long tokens;
+    private long nodes;
+    private long inputChars;
+    private long nanos;
+    private int maxDepth;
+
+    private final ArrayDeque<Object> queue = new ArrayDeque<Object>();
+    private Subscriber subscriber;
+    private Runnable readyListener;
+    private long demand;
+    private boolean draining;
+    private boolean paused;
+    private boolean cancelled;
+    private boolean finished;
+    private boolean terminated;
+    private RuntimeException error;
+
+    /**
+     * 初始化一个不做解析限制的解析器。
+     */
+    public WrapGsonStreamParser() {
+        this(ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * 初始化一个解析器。
+     *
+     * 顶层数组的元素数量同样受 {@link ParseLimits#getMaxEntries()} 限制。
+     *
+     * @param limits 解析限制
+     */
+    public WrapGsonStreamParser(ParseLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * 添加订阅者，只能有一个订阅者。
+     *
+     * 订阅之前已经解析完成的数据会保留，待订阅者请求后推送。
+     */
+    @Override
+    public synchronized void subscribe(Subscriber subscriber) {
+        if (this.subscriber != null) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("This parser already has a subscriber."));
+            return;
+        }
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(new ParserSubscription());
+        drain();
+    }
+
+    /**
+     * 设置就绪回调：{@link #feed(ByteBuffer)} 返回 {@code false} 后，积压的数据全部推送完毕时调用一次，
+     * 可在其中恢复读取。
+     *
+     * @param readyListener 就绪回调
+     */
+    public synchronized void onReady(Runnable readyListener) {
+        this.readyListener = readyListener;
+    }
+
+    /**
+     * 解析一块 UTF-8 数据，{@code chunk} 中的剩余字节将全部被消费。
+     *
+     * 多字节字符可以跨块出现。
+     *
+     * @param  chunk 数据块
+     * @return 解析出的数据是否都已推送给订阅者；为 {@code false} 时订阅者处理不过来，建议暂停读取直到就绪回调。
+     *         已取消订阅时返回 {@code false} 并丢弃数据。
+     * @throws JsonSyntaxException 数据不是合法的 JSON 或 UTF-8
+     * @throws ParseLimitExceededException 超出解析限制
+     * @throws IllegalStateException 已经调用过 {@link #finish()} 或解析出错
+     */
+    public synchronized boolean feed(ByteBuffer chunk) {
+        checkFeedable();
+        if (this.cancelled) {
+            chunk.position(chunk.limit());
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            decode(chunk, false);
+        } catch (RuntimeException e) {
+            fail(e);
+            throw e;
+        } finally {
+            this.nanos += System.nanoTime() - start;
+        }
+        this.paused = !this.queue.isEmpty();
+        return !this.paused;
+    }
+
+    /**
+     * 输入结束。解析完剩余数据后，推送完所有数据即通知订阅者 {@code onComplete}。
+     *
+     * 没有收到任何 JSON 值时直接完成，不推送任何数据。
+     *
+     * @throws JsonSyntaxException JSON 不完整
+     * @throws IllegalStateException 已经调用过本方法或解析出错
+     */
+    public synchronized void finish() {
+        checkFeedable();
+
+        long start = System.nanoTime();
+        try {
+            decode(ByteBuffer.allocate(0), true);
+            endToken();
+            if (this.topState != TOP_END && (this.tokens > 0 || !this.stack.isEmpty())) {
+                throw syntaxError("End of input");
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+            throw e;
+        } finally {
+            this.nanos += System.nanoTime() - start;
+        }
+
+        this.finished = true;
+        if (WrapGsonMetrics.ENABLED) {
+            WrapGsonMetrics.LISTENER.onParse(this.nanos, this.inputChars, this.nodes, this.nodes, this.maxDepth);
+        }
+        drain();
+    }
+
+    private void checkFeedable() {
+        if (this.error != null) {
+            throw new IllegalStateException("This parser has failed.", this.error);
+        }
+        if (this.finished) {
+            throw new IllegalStateException("This parser has been finished.");
+        }
+    }
+
+    private void decode(ByteBuffer chunk, boolean endOfInput) {
+        ByteBuffer in = chunk;
+        if (this.leftover.position() > 0) {
+            this.leftover.flip();
+            in = ByteBuffer.allocate(this.leftover.remaining() + chunk.remaining());
+            in.put(this.leftover).put(chunk);
+            in.flip();
+            this.leftover.clear();
+        }
+
+        while (true) {
+            CoderResult result = this.decoder.decode(in, this.chars, endOfInput);
+            consumeChars();
+            if (result.isOverflow()) {
+                continue;
+            }
+            if (result.isError()) {
+                throw syntaxError("Malformed UTF-8 input");
+            }
+            break;
+        }
+        this.leftover.put(in);
+
+        if (endOfInput) {
+            while (this.decoder.flush(this.chars).isOverflow()) {
+                consumeChars();
+            }
+            consumeChars();
+        }
+    }
+
+    private void consumeChars() {
+        this.chars.flip();
+        this.inputChars += this.chars.remaining();
+        while (this.chars.hasRemaining()) {
+            consume(this.chars.get());
+        }
+        this.chars.clear();
+    }
+
+    private void consume(char c) {
+        switch (this.lexState) {
+            case LEX_STRING:
+                if (c == '"') {
+                    this.lexState = LEX_NONE;
+                    endString();
+                } else if (c == '\\') {
+                    this.lexState = LEX_ESCAPE;
+                } else if (c < 0x20) {
+                    throw syntaxError("Unescaped control character in string");
+                } else {
+                    appendToken(c);
+                }
+                return;
+            case LEX_ESCAPE:
+                consumeEscape(c);
+                return;
+            case LEX_UNICODE:
+                int digit = hexDigit(c);
+                if (digit < 0) {
+                    throw syntaxError("Malformed unicode escape");
+                }
+                this.unicodeValue = (this.unicodeValue << 4) | digit;
+                if (++this.unicodeDigits == 4) {
+                    this.lexState = LEX_STRING;
+                    appendToken((char) this.unicodeValue);
+                }
+                return;
+            case LEX_NUMBER:
+                if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    appendToken(c);
+                    return;
+                }
+                endToken();
+                break;
+            case LEX_LITERAL:
+                if (c >= 'a' && c <= 'z') {
+                    appendToken(c);
+                    if (!isLiteralPrefix()) {
+                        throw syntaxError("Unexpected literal");
+                    }
+                    return;
+                }
+                endToken();
+                break;
+            default:
+                break;
+        }
+        consumeStructural(c);
+    }
+
+    private void consumeEscape(char c) {
+        this.lexState = LEX_STRING;
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                appendToken(c);
+                break;
+            case 'b':
+                appendToken('\b');
+                break;
+            case 'f':
+                appendToken('\f');
+                break;
+            case 'n':
+                appendToken('\n');
+                break;
+            case 'r':
+                appendToken('\r');
+                break;
+            case 't':
+                appendToken('\t');
+                break;
+            case 'u':
+                this.lexState = LEX_UNICODE;
+                this.unicodeDigits = 0;
+                this.unicodeValue = 0;
+                break;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * RFC 8259 只允许 ASCII 十六进制数字，{@code Character.digit} 会接受全角等其他数字，因此不能使用。
+     *
+     * @return 十六进制数字的值，{@code c} 不是 ASCII 十六进制数字时返回 -1
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private void consumeStructural(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                return;
+            case '{':
+                startValue();
+                push(new Frame(new WrapGson(), OBJECT_KEY_OR_END));
+                return;
+            case '[':
+                startValue();
+                if (this.stack.isEmpty()) {
+                    push(new Frame((List<WrapGson>) null, ARRAY_VALUE_OR_END));
+                } else {
+                    push(new Frame(new ArrayList<WrapGson>(), ARRAY_VALUE_OR_END));
+                }
+                return;
+            case '}':
+                endContainer(OBJECT_KEY_OR_END, OBJECT_COMMA_OR_END);
+                return;
+            case ']':
+                endContainer(ARRAY_VALUE_OR_END, ARRAY_COMMA_OR_END);
+                return;
+            case ':':
+                expect(OBJECT_COLON, OBJECT_COLON, "':'");
+                top().state = OBJECT_VALUE;
+                return;
+            case ',':
+                int state = state();
+                if (state == OBJECT_COMMA_OR_END) {
+                    top().state = OBJECT_KEY;
+                } else if (state == ARRAY_COMMA_OR_END) {
+                    top().state = ARRAY_VALUE;
+                } else {
+                    throw syntaxError("Unexpected ','");
+                }
+                return;
+            case '"':
+                state = state();
+                this.tokenIsKey = state == OBJECT_KEY_OR_END || state == OBJECT_KEY;
+                if (this.tokenIsKey) {
+                    countToken();
+                } else {
+                    startValue();
+                }
+                startToken(LEX_STRING);
+                return;
+            default:
+                break;
+        }
+
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            startValue();
+            startToken(LEX_NUMBER);
+            appendToken(c);
+        } else if (c == 't' || c == 'f' || c == 'n') {
+            startValue();
+            startToken(LEX_LITERAL);
+            appendToken(c);
+        } else {
+            throw syntaxError(String.format("Unexpected character '%s'", c));
+        }
+    }
+
+    private void startToken(int lexState) {
+        this.lexState = lexState;
+        this.token.setLength(0);
+    }
+
+    private void appendToken(char c) {
+        this.token.append(c);
+        if (this.token.length() > this.limits.getMaxStringLength()) {
+            throw new ParseLimitExceededException.StringLength(this.limits.getMaxStringLength(), path());
+        }
+    }
+
+    /**
+     * 结束尚未被分隔符结束的数字或字面量。
+     */
+    private void endToken() {
+        int lexState = this.lexState;
+        this.lexState = LEX_NONE;
+        if (lexState == LEX_NUMBER) {
+            String text = this.token.toString();
+            if (!isNumber(text)) {
+                throw syntaxError(String.format("Malformed number '%s'", text));
+            }
+            endValue(WrapGson.newProperty(new LazilyParsedNumber(text)));
+        } else if (lexState == LEX_LITERAL) {
+            String text = this.token.toString();
+            if (text.equals("true")) {
+                endValue(WrapGson.newProperty(Boolean.TRUE));
+            } else if (text.equals("false")) {
+                endValue(WrapGson.newProperty(Boolean.FALSE));
+            } else if (text.equals("null")) {
+                endValue(null);
+            } else {
+                throw syntaxError(String.format("Unexpected literal '%s'", text));
+            }
+        } else if (lexState != LEX_NONE) {
+            throw syntaxError("Unterminated string");
+        }
+    }
+
+    private void endString() {
+        String text = this.token.toString();
+        if (this.tokenIsKey) {
+            Frame frame = top();
+            frame.name = text;
+            frame.state = OBJECT_COLON;
+        } else {
+            endValue(WrapGson.newProperty(text));
+        }
+    }
+
+    private boolean isLiteralPrefix() {
+        return startsWith("true") || startsWith("false") || startsWith("null");
+    }
+
+    private boolean startsWith(String literal) {
+        int length = this.token.length();
+        return length <= literal.length() && literal.regionMatches(0, this.token.toString(), 0, length);
+    }
+
+    /**
+     * 按 RFC 8259 检查数字格式：{@code -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?}。
+     */
+    private static boolean isNumber(String text) {
+        int i = 0;
+        int length = text.length();
+        if (i < length && text.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && text.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            i = skipDigits(text, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && text.charAt(i) == '.') {
+            int start = ++i;
+            i = skipDigits(text, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            int start = i;
+            i = skipDigits(text, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private static int skipDigits(String text, int i) {
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private void startValue() {
+        int state = state();
+        if (state != TOP_VALUE && state != OBJECT_VALUE && state != ARRAY_VALUE_OR_END && state != ARRAY_VALUE) {
+            throw syntaxError("Unexpected value");
+        }
+        countToken();
+    }
+
+    private void endValue(WrapGson value) {
+        if (value != null) {
+            this.nodes++;
+        }
+        if (this.stack.isEmpty()) {
+            this.topState = TOP_END;
+            emit(value);
+            return;
+        }
+
+        Frame frame = top();
+        if (++frame.entries > this.limits.getMaxEntries()) {
+            throw new ParseLimitExceededException.Entries(this.limits.getMaxEntries(), path());
+        }
+        if (frame.object != null) {
+            frame.object.put(frame.name, value);
+            frame.state = OBJECT_COMMA_OR_END;
+        } else {
+            frame.state = ARRAY_COMMA_OR_END;
+            if (frame.list != null) {
+                frame.list.add(value);
+            } else {
+                emit(value);
+            }
+        }
+    }
+
+    private void push(Frame frame) {
+        int depth = this.stack.size() + 1;
+        if (depth > this.limits.getMaxDepth()) {
+            throw new ParseLimitExceededException.Depth(this.limits.getMaxDepth(), path());
+        }
+        this.maxDepth = Math.max(this.maxDepth, depth);
+        this.stack.add(frame);
+    }
+
+    private void endContainer(int emptyState, int filledState) {
+        expect(emptyState, filledState, emptyState == OBJECT_KEY_OR_END ? "'}'" : "']'");
+        countToken();
+        Frame frame = this.stack.remove(this.stack.size() - 1);
+        if (frame.object != null) {
+            endValue(frame.object);
+        } else if (frame.list != null) {
+            endValue(WrapGson.newProperty(frame.list));
+        } else {
+            this.topState = TOP_END;
+        }
+    }
+
+    private void expect(int first, int second, String what) {
+        int state = state();
+        if (state != first && state != second) {
+            throw syntaxError("Unexpected " + what);
+        }
+    }
+
+    private int state() {
+        return this.stack.isEmpty() ? this.topState : top().state;
+    }
+
+    private Frame top() {
+        return this.stack.get(this.stack.size() - 1);
+    }
+
+    private void countToken() {
+        if (++this.tokens > this.limits.getMaxTokens()) {
+            throw new ParseLimitExceededException.Tokens(this.limits.getMaxTokens(), path());
+        }
+    }
+
+    /**
+     * @return 当前位置的 JSON 路径，格式与 Gson 的 {@code JsonReader#getPath()} 相同
+     */
+    private String path() {
+        StringBuilder sb = new StringBuilder("$");
+        for (Frame frame : this.stack) {
+            if (frame.object == null) {
+                sb.append('[').append(frame.entries).append(']');
+            } else if (frame.name != null) {
+                sb.append('.').append(frame.name);
+            }
+        }
+        return sb.toString();
+    }
+
+    private JsonSyntaxException syntaxError(String message) {
+        return new JsonSyntaxException(String.format("%s after %d chars at path %s.", message, this.inputChars, path()));
+    }
+
+    private void emit(WrapGson value) {
+        this.queue.add(value == null ? NULL : value);
+        drain();
+    }
+
+    private void fail(RuntimeException e) {
+        this.error = e;
+        this.queue.clear();
+        if (this.subscriber != null && !this.cancelled && !this.terminated) {
+            this.terminated = true;
+            this.subscriber.onError(e);
+        }
+    }
+
+    private void drain() {
+        if (this.draining || this.subscriber == null || this.cancelled || this.terminated) {
+            return;
+        }
+        this.draining = true;
+        try {
+            while (this.demand > 0 && !this.queue.isEmpty() && !this.cancelled) {
+                this.demand--;
+                Object item = this.queue.poll();
+                this.subscriber.onNext(item == NULL ? null : (WrapGson) item);
+            }
+            if (this.cancelled || !this.queue.isEmpty()) {
+                return;
+            }
+            if (this.error != null) {
+                this.terminated = true;
+                this.subscriber.onError(this.error);
+            } else if (this.finished) {
+                this.terminated = true;
+                this.subscriber.onComplete();
+            } else if (this.paused) {
+                this.paused = false;
+                if (this.readyListener != null) {
+                    this.readyListener.run();
+                }
+            }
+        } finally {
+            this.draining = false;
+        }
+    }
+
+    private final class ParserSubscription implements Subscription {
+        @Override
+        public void request(long n) {
+            synchronized (WrapGsonStreamParser.this) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException(String.format("Request must be positive, but was %d.", n)));
+                    return;
+                }
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (WrapGsonStreamParser.this) {
+                cancelled = true;
+                queue.clear();
+            }
+        }
+    }
+
+    /**
+     * 一个尚未解析完的对象或数组。顶层数组的元素直接推送，{@code object} 与 {@code list} 均为 {@code null}。
+     */
+    private static final class Frame {
+        final WrapGson object;
+        final List<WrapGson> list;
+        String name;
+        int entries;
+        int state;
+
+        Frame(WrapGson object, int state) {
+            this.object = object;
+            this.list = null;
+            this.state = state;
+        }
+
+        Frame(List<WrapGson> list, int state) {
+            this.object = null;
+            this.list = list;
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.smalltiantian.common;
+
+/**
+ * 对比 {@link JsonStringEncoder} 与原先 {@code String.format("\"%s\"", value)} 拼接字符串的耗时。
+ *
+ * 不是单元测试，需要手动运行：
+ *
+ * <pre>
+ * java -cp &lt;classpath&gt; com.smalltiantian.common.JsonStringEncoderBenchmark
+ * </pre>
+ *
+ * 前几轮为预热，以最后几轮的结果为准。
+ */
+public class JsonStringEncoderBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 2000000;
+    private static final String[] INPUTS = {
+        "value",
+        "some-longer-plain-identifier-value-0123456789",
+        "mixed \"quoted\" text\nwith\tescapes"
+    };
+
+    public static void main(String[] args) {
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += String.format("\"%s\"", INPUTS[i % INPUTS.length]).length();
+            }
+            long format = System.nanoTime() - start;
+
+            StringBuilder sb = new StringBuilder();
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sb.setLength(0);
+                JsonStringEncoder.encode(sb, INPUTS[i % INPUTS.length]);
+                sink += sb.length();
+            }
+            long encoder = System.nanoTime() - start;
+
+            System.out.printf("round %d: String.format %d ns/op, JsonStringEncoder %d ns/op%n",
+                    round, format / ITERATIONS, encoder / ITERATIONS);
+        }
+        // 防止循环被优化掉
+        System.out.println(sink);
+    }
+}
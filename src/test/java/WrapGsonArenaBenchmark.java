@@ -0,0 +1,69 @@
+package com.smalltiantian.common;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 对比在堆上解析与在 {@link WrapGsonArena} 中解析同一文档时，每次解析在当前线程分配的字节数与耗时。
+ *
+ * 不是单元测试，需要手动运行，且依赖 HotSpot 的 {@code com.sun.management.ThreadMXBean}：
+ *
+ * <pre>
+ * java -cp &lt;classpath&gt; com.smalltiantian.common.WrapGsonArenaBenchmark
+ * </pre>
+ *
+ * 前几轮为预热，以最后几轮的结果为准。
+ */
+public class WrapGsonArenaBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 20000;
+    private static final int RECORDS = 200;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        String json = document();
+
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += WrapGson.fromJson(json).size();
+            }
+            long heapNanos = System.nanoTime() - start;
+            long heapBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+            bytes = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                WrapGsonArena arena = WrapGsonArena.open();
+                try {
+                    sink += arena.fromJson(json).size();
+                } finally {
+                    arena.close();
+                }
+            }
+            long arenaNanos = System.nanoTime() - start;
+            long arenaBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+            System.out.printf("round %d: heap %d B/op %d us/op, arena %d B/op %d us/op (%.1f%% fewer bytes)%n",
+                    round, heapBytes / ITERATIONS, heapNanos / ITERATIONS / 1000,
+                    arenaBytes / ITERATIONS, arenaNanos / ITERATIONS / 1000,
+                    100.0 * (heapBytes - arenaBytes) / heapBytes);
+        }
+        // 防止循环被优化掉
+        System.out.println(sink);
+    }
+
+    private static String document() {
+        StringBuilder sb = new StringBuilder("{\"records\":[");
+        for (int i = 0; i < RECORDS; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"id\":").append(i)
+              .append(",\"name\":\"name-").append(i)
+              .append("\",\"tags\":[\"a\",\"b\"],\"detail\":{\"price\":").append(i).append(".5}}");
+        }
+        return sb.append("]}").toString();
+    }
+}
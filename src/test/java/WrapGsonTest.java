@@ -1,5 +1,7 @@
 package com.smalltiantian.common.test;
 
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -330,4 +332,510 @@ public class WrapGsonTest {
             throw new ExceptionForTest();
         }
     }
+
+    @Test
+    public void toStringEscapesKeysAndValues() {
+        String special = "quote\" backslash\\ tab\t newline\n control\u0001 separator\u2028 unicode\u4e2d";
+
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty(special, special);
+        JsonArray jsonList = new JsonArray();
+        jsonList.add(special);
+        jsonObject.add("key_list", jsonList);
+
+        WrapGson wrap = WrapGson.fromJson(jsonObject.toString());
+        assertEquals(special, wrap.getAsString(special));
+        assertEquals(jsonObject.toString(), wrap.toString());
+    }
+
+    @Test
+    public void toStringWithEmptyContainers() {
+        WrapGson wrap = new WrapGson();
+        assertEquals("{}", wrap.toString());
+
+        wrap.add("key_json", new WrapGson());
+        wrap.add("key_list", new ArrayList<String>());
+        assertEquals("{\"key_json\":{},\"key_list\":[]}", wrap.toString());
+    }
+
+    @Test
+    public void toJsonWithPrettyFormat() {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("key_string", "value");
+        jsonObject.addProperty("key_number", 1);
+        JsonArray jsonList = new JsonArray();
+        jsonList.add("list1");
+        jsonList.add(new JsonObject());
+        jsonList.add(new JsonArray());
+        jsonObject.add("key_list", jsonList);
+        JsonObject nested = new JsonObject();
+        nested.addProperty("key_boolean", true);
+        jsonObject.add("key_json", nested);
+
+        WrapGson wrap = WrapGson.fromJson(jsonObject.toString());
+        Gson pretty = new GsonBuilder().setPrettyPrinting().create();
+        assertEquals(pretty.toJson(jsonObject), wrap.toJson(JsonFormat.PRETTY));
+        assertEquals(jsonObject.toString(), wrap.toJson(JsonFormat.COMPACT));
+    }
+
+    @Test
+    public void toJsonWithCanonicalFormat() {
+        WrapGson first = WrapGson.fromJson("{\"b\":[1.50,-0,1e3],\"a\":{\"y\":100,\"x\":0.0000001},\"B\":2E+30}");
+        WrapGson second = WrapGson.fromJson("{\"B\":2e30,\"a\":{\"x\":1E-7,\"y\":1.00E2},\"b\":[1.5,0,1000]}");
+
+        String canonical = "{\"B\":2e+30,\"a\":{\"x\":1e-7,\"y\":100},\"b\":[1.5,0,1000]}";
+        assertEquals(canonical, first.toJson(JsonFormat.CANONICAL));
+        assertEquals(canonical, second.toJson(JsonFormat.CANONICAL));
+    }
+
+    @Test
+    public void toJsonWithCanonicalNumbers() {
+        WrapGson wrap = WrapGson.fromJson("{\"n\":[123456789012345678901234,1.5e25,1e21,1e20,123.45e1,0.000001,-12.5e-8,-0.0]}");
+
+        String canonical = "{\"n\":[1.23456789012345678901234e+23,1.5e+25,1e+21,100000000000000000000,1234.5,0.000001,-1.25e-7,0]}";
+        assertEquals(canonical, wrap.toJson(JsonFormat.CANONICAL));
+    }
+
+    @Test
+    public void fromJsonWithinLimits() {
+        ParseLimits limits = new ParseLimits(2, 5, 2, 9);
+        WrapGson wrap = WrapGson.fromJson("{\"key\":[1,\"value\"]}", limits);
+
+        assertEquals("{\"key\":[1,\"value\"]}", wrap.toString());
+    }
+
+    @Test(expected = ParseLimitExceededException.Depth.class)
+    public void fromJsonRejectsTooDeep() {
+        WrapGson.fromJson("{\"key\":[[1]]}", new ParseLimits(2, 100, 100, 100));
+    }
+
+    @Test(expected = ParseLimitExceededException.StringLength.class)
+    public void fromJsonRejectsTooLongString() {
+        WrapGson.fromJson("{\"key\":\"value\"}", new ParseLimits(100, 4, 100, 100));
+    }
+
+    @Test(expected = ParseLimitExceededException.Entries.class)
+    public void fromJsonRejectsTooManyEntries() {
+        WrapGson.fromJson("{\"key\":[1,2,3]}", new ParseLimits(100, 100, 2, 100));
+    }
+
+    @Test(expected = ParseLimitExceededException.Tokens.class)
+    public void fromJsonRejectsTooManyTokens() {
+        WrapGson.fromJson("{\"key\":[1,2,3]}", new ParseLimits(100, 100, 100, 6));
+    }
+
+    @Test
+    public void fromJsonRejectsAfterReadingOnlyAPrefix() {
+        final int[] read = new int[1];
+        Reader endlessArray = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                for (int i = 0; i < length; i++)
+                    buffer[offset + i] = '[';
+                read[0] += length;
+                return length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try {
+            WrapGson.fromJson(endlessArray, new ParseLimits(32, 100, 100, 1000));
+            fail();
+        } catch (ParseLimitExceededException.Depth e) {
+            assertEquals(32, e.getLimit());
+        }
+        assertTrue(read[0] < 64 * 1024);
+    }
+
+    @Test
+    public void fromJsonAcceptsEscapedStringAtLimit() {
+        StringBuilder json = new StringBuilder("[\"");
+        for (int i = 0; i < 1000; i++)
+            json.append("\\u0041");
+        json.append("\"]");
+
+        WrapGson wrap = WrapGson.fromJson(json.toString(), new ParseLimits(10, 1000, 10, 100));
+        assertEquals(1000, wrap.getAsList().get(0).getAsString().length());
+    }
+
+    @Test
+    public void fromJsonRejectsLongStringAfterReadingOnlyAPrefix() {
+        final int[] read = new int[1];
+        Reader endlessString = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                for (int i = 0; i < length; i++)
+                    buffer[offset + i] = read[0] + i < 2 ? "[\"".charAt(read[0] + i) : 'a';
+                read[0] += length;
+                return length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try {
+            WrapGson.fromJson(endlessString, new ParseLimits(32, 16, 100, 1000));
+            fail();
+        } catch (ParseLimitExceededException.StringLength e) {
+            assertEquals(16, e.getLimit());
+        }
+        assertTrue(read[0] < 64 * 1024);
+    }
+
+    @Test
+    public void toStringWithDeeplyNestedObjects() {
+        int depth = 100000;
+        WrapGson inner = new WrapGson();
+        inner.add("key_list", new ArrayList<String>());
+        for (int i = 1; i < depth; i++) {
+            WrapGson outer = new WrapGson();
+            outer.add("key_json", inner);
+            inner = outer;
+        }
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1; i < depth; i++)
+            expected.append("{\"key_json\":");
+        expected.append("{\"key_list\":[]}");
+        for (int i = 1; i < depth; i++)
+            expected.append("}");
+
+        assertEquals(expected.toString(), inner.toString());
+        assertEquals(expected.toString(), inner.toJson(JsonFormat.CANONICAL));
+    }
+
+    @Test
+    public void listPropertyToStringLikeList() {
+        WrapGson wrap = WrapGson.fromJson("{\"key_list\":[1,\"value\",null,[true,[]],{\"key\":[\"value\"]}]}");
+
+        assertEquals("[1, value, null, [true, []], {\"key\":[\"value\"]}]", wrap.get("key_list").toString());
+        assertEquals(wrap.getAsList("key_list").toString(), wrap.get("key_list").toString());
+    }
+
+    @Test
+    public void listenerRecordsParseSerializeAndCopy() {
+        assertTrue(WrapGsonMetrics.isEnabled());
+        WrapGsonStats stats = (WrapGsonStats) WrapGsonMetrics.getListener();
+        long parseCalls = stats.getParse().getCalls();
+        long serializeCalls = stats.getSerialize().getCalls();
+        long copyCalls = stats.getCopy().getCalls();
+
+        String json = "{\"key\":[1,{\"nested\":\"value\"}]}";
+        WrapGson wrap = WrapGson.fromJson(json);
+        assertEquals(json, wrap.toString());
+        new WrapGson().add("key_json", wrap);
+
+        assertEquals(parseCalls + 1, stats.getParse().getCalls());
+        assertEquals(serializeCalls + 1, stats.getSerialize().getCalls());
+        assertEquals(copyCalls + 1, stats.getCopy().getCalls());
+        assertTrue(stats.getParse().getMaxChars() >= json.length());
+        assertTrue(stats.getParse().getMaxNodes() >= 5);
+        assertTrue(stats.getParse().getMaxDepth() >= 3);
+        assertEquals(0, stats.getSerialize().getTotalReusedContainers());
+        assertEquals(0, stats.getCopy().getTotalReusedContainers());
+
+        long histogramCalls = 0;
+        for (long count : stats.getParse().getLatencyHistogram())
+            histogramCalls += count;
+        assertEquals(stats.getParse().getCalls(), histogramCalls);
+    }
+
+    @Test
+    public void arenaReusesContainersBetweenScopes() throws Exception {
+        String json = "{\"key\":[1,{\"nested\":\"value\"}],\"key_boolean\":true}";
+        WrapGsonStats stats = (WrapGsonStats) WrapGsonMetrics.getListener();
+
+        WrapGsonArena arena = WrapGsonArena.open();
+        WrapGson first = arena.fromJson(json);
+        assertEquals(json, first.toString());
+        arena.close();
+
+        long reused = stats.getParse().getTotalReusedContainers();
+        long nodes = stats.getParse().getTotalNodes();
+        try (WrapGsonArena reopened = WrapGsonArena.open()) {
+            assertNotSame(arena, reopened);
+            WrapGson second = reopened.fromJson(json);
+            assertEquals(json, second.toString());
+            assertEquals("value", second.getAsList("key").get(1).getAsString("nested"));
+        }
+        // 6 nodes; the two objects and the list reuse the containers recycled by the first scope
+        assertEquals(nodes + 6, stats.getParse().getTotalNodes());
+        assertEquals(reused + 3, stats.getParse().getTotalReusedContainers());
+    }
+
+    @Test
+    public void arenaRejectsStaleHandlesAfterReuse() {
+        WrapGsonArena arena = WrapGsonArena.open();
+        WrapGson root = arena.fromJson("{\"user\":\"alice\",\"roles\":[\"admin\"]}");
+        WrapGson user = root.get("user");
+        WrapGson roles = root.get("roles");
+        arena.close();
+
+        try (WrapGsonArena reopened = WrapGsonArena.open()) {
+            reopened.fromJson("{\"user\":\"mallory\",\"roles\":[\"guest\"]}");
+            reopened.fromJson("[{\"user\":\"bob\"}]");
+
+            try {
+                root.toString();
+                fail();
+            } catch (IllegalStateException e) {
+            }
+            try {
+                roles.getAsList();
+                fail();
+            } catch (IllegalStateException e) {
+            }
+            try {
+                arena.fromJson("{}");
+                fail();
+            } catch (IllegalStateException e) {
+            }
+            assertEquals("alice", user.getAsString());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void arenaRejectsUseAfterRelease() {
+        WrapGson released;
+        try (WrapGsonArena arena = WrapGsonArena.open()) {
+            released = arena.fromJson("{\"key\":\"value\"}");
+        }
+        released.get("key");
+    }
+
+    @Test
+    public void arenaCopiesSurviveRelease() {
+        WrapGson kept = new WrapGson();
+        try (WrapGsonArena arena = WrapGsonArena.open()) {
+            try (WrapGsonArena nested = WrapGsonArena.open()) {
+                assertNotSame(arena, nested);
+            }
+            kept.add("key_json", arena.fromJson("{\"key\":[1,{\"nested\":\"value\"}]}"));
+        }
+        try (WrapGsonArena arena = WrapGsonArena.open()) {
+            arena.fromJson("{\"other\":[2,{\"other\":\"other\"}]}");
+            assertEquals("{\"key_json\":{\"key\":[1,{\"nested\":\"value\"}]}}", kept.toString());
+        }
+    }
+
+    @Test
+    public void arenaChildrenDoNotEscapeThroughPutAllOrDeepMerge() {
+        WrapGson heap = new WrapGson();
+        WrapGson merged;
+        try (WrapGsonArena arena = WrapGsonArena.open()) {
+            heap.putAll(arena.fromJson("{\"key\":[1,{\"nested\":\"value\"}]}"));
+            merged = WrapGson.fromJson("{\"base\":{\"a\":1}}")
+                    .deepMerge(arena.fromJson("{\"base\":{\"b\":[2]},\"other\":{\"c\":3}}"), MergePolicy.CONCAT);
+        }
+        WrapGson kept = new WrapGson();
+        kept.add("copy", heap);
+        try (WrapGsonArena arena = WrapGsonArena.open()) {
+            arena.fromJson("{\"key\":[2,{\"other\":\"other\"}],\"base\":{},\"other\":[]}");
+            assertEquals("{\"copy\":{\"key\":[1,{\"nested\":\"value\"}]}}", kept.toString());
+            assertEquals("{\"base\":{\"a\":1,\"b\":[2]},\"other\":{\"c\":3}}", merged.toString());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void arenaOnlyUsableByOwnerThread() throws Throwable {
+        final Throwable[] thrown = new Throwable[1];
+        try (final WrapGsonArena arena = WrapGsonArena.open()) {
+            Thread other = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        arena.fromJson("{}");
+                    } catch (Throwable e) {
+                        thrown[0] = e;
+                    }
+                }
+            };
+            other.start();
+            other.join();
+        }
+        throw thrown[0];
+    }
+
+    @Test
+    public void streamParserEmitsArrayElementsOnDemand() throws Exception {
+        final List<String> received = new ArrayList<String>();
+        final boolean[] completed = new boolean[1];
+        final WrapGsonPublisher.Subscription[] subscription = new WrapGsonPublisher.Subscription[1];
+        final boolean[] ready = new boolean[1];
+
+        WrapGsonStreamParser parser = new WrapGsonStreamParser();
+        parser.onReady(new Runnable() {
+            @Override
+            public void run() {
+                ready[0] = true;
+            }
+        });
+        parser.subscribe(new WrapGsonPublisher.Subscriber() {
+            @Override
+            public void onSubscribe(WrapGsonPublisher.Subscription s) {
+                subscription[0] = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(WrapGson item) {
+                received.add(String.valueOf(item));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.toString());
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+
+        byte[] bytes = "[{\"key\":\"\u4e2d\\u6587\"}, 1.5e3 ,null,[true,[]]]".getBytes("UTF-8");
+        assertTrue(parser.feed(ByteBuffer.wrap(bytes, 0, 10)));
+        assertEquals(0, received.size());
+        // split inside the multi-byte character
+        assertTrue(parser.feed(ByteBuffer.wrap(bytes, 10, 10)));
+        assertEquals(1, received.size());
+        assertEquals("{\"key\":\"\u4e2d\u6587\"}", received.get(0));
+
+        assertFalse(parser.feed(ByteBuffer.wrap(bytes, 20, bytes.length - 20)));
+        assertEquals(1, received.size());
+        assertFalse(ready[0]);
+
+        subscription[0].request(Long.MAX_VALUE);
+        assertTrue(ready[0]);
+        assertEquals(4, received.size());
+        assertEquals("1.5e3", received.get(1));
+        assertEquals("null", received.get(2));
+        assertEquals("[true, []]", received.get(3));
+
+        assertFalse(completed[0]);
+        parser.finish();
+        assertTrue(completed[0]);
+    }
+
+    @Test
+    public void streamParserRejectsInvalidInput() throws Exception {
+        String[] invalid = {"[1,]", "{\"key\" 1}", "[01]", "[tru]", "{\"key\":\"\u0001\"}", "[1", "1 2", "[\"\\x\"]", "[\"\\u\uFF10\uFF10\u0664\u0661\"]"};
+        for (String json : invalid) {
+            final Throwable[] signalled = new Throwable[1];
+            WrapGsonStreamParser parser = new WrapGsonStreamParser();
+            parser.subscribe(new WrapGsonPublisher.Subscriber() {
+                @Override
+                public void onSubscribe(WrapGsonPublisher.Subscription s) {
+                    s.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(WrapGson item) {
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    signalled[0] = throwable;
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            try {
+                parser.feed(ByteBuffer.wrap(json.getBytes("UTF-8")));
+                parser.finish();
+                fail(json);
+            } catch (JsonSyntaxException e) {
+                assertSame(e, signalled[0]);
+            }
+        }
+    }
+
+    @Test(expected = ParseLimitExceededException.Depth.class)
+    public void streamParserRejectsWithinAChunk() throws Exception {
+        WrapGsonStreamParser parser = new WrapGsonStreamParser(new ParseLimits(2, 100, 100, 100));
+        parser.feed(ByteBuffer.wrap("[[[".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void deepMergeLayersWithoutCopyingUntouchedSubtrees() {
+        String defaultsJson = "{\"db\":{\"host\":\"localhost\",\"port\":5432,\"pool\":{\"size\":4}},\"tags\":[\"a\",{\"x\":1}],\"log\":{\"level\":\"info\"}}";
+        WrapGson defaults = WrapGson.fromJson(defaultsJson);
+        WrapGson overrides = WrapGson.fromJson("{\"db\":{\"port\":6543,\"user\":null},\"tags\":[\"b\",{\"y\":2},\"c\"],\"extra\":true}");
+
+        WrapGson replaced = defaults.deepMerge(overrides, MergePolicy.REPLACE);
+        assertEquals("{\"db\":{\"host\":\"localhost\",\"port\":6543,\"pool\":{\"size\":4},\"user\":null},\"tags\":[\"b\",{\"y\":2},\"c\"],\"log\":{\"level\":\"info\"},\"extra\":true}", replaced.toString());
+        assertSame(defaults.get("log"), replaced.get("log"));
+        assertSame(defaults.get("db").get("pool"), replaced.get("db").get("pool"));
+        assertSame(overrides.get("tags"), replaced.get("tags"));
+
+        WrapGson concatenated = defaults.deepMerge(overrides, MergePolicy.CONCAT);
+        assertEquals("[\"a\",{\"x\":1},\"b\",{\"y\":2},\"c\"]", concatenated.get("tags").toJson(JsonFormat.COMPACT));
+
+        WrapGson byIndex = defaults.deepMerge(overrides, MergePolicy.BY_INDEX);
+        assertEquals("[\"b\",{\"x\":1,\"y\":2},\"c\"]", byIndex.get("tags").toJson(JsonFormat.COMPACT));
+
+        assertEquals(defaultsJson, defaults.toString());
+    }
+
+    @Test
+    public void putAllSharesValues() {
+        WrapGson wrap = WrapGson.fromJson("{\"key\":1,\"key_json\":{\"nested\":1}}");
+        WrapGson other = WrapGson.fromJson("{\"key\":2,\"key_other\":{\"nested\":2}}");
+
+        wrap.putAll(other);
+        assertEquals("{\"key\":2,\"key_json\":{\"nested\":1},\"key_other\":{\"nested\":2}}", wrap.toString());
+        assertSame(other.get("key_other"), wrap.get("key_other"));
+    }
+
+    @Test
+    public void indexFindsRecordsByField() {
+        WrapGson wrap = WrapGson.fromJson("{\"records\":[{\"id\":1,\"name\":\"a\",\"detail\":{\"price\":30}},"
+                + "{\"id\":2.0,\"name\":\"b\",\"detail\":{\"price\":10}},{\"id\":\"3\",\"name\":\"c\",\"detail\":{\"price\":20.5}},"
+                + "{\"name\":\"d\",\"detail\":{\"price\":10}},\"not a record\",null]}");
+
+        WrapGsonIndex byId = WrapGsonIndex.hash(wrap, "records", "id");
+        assertEquals("a", byId.first(1).getAsString("name"));
+        assertEquals("b", byId.first(2L).getAsString("name"));
+        assertEquals("c", byId.first("3").getAsString("name"));
+        assertNull(byId.first(3));
+        assertEquals(0, byId.get("missing").size());
+
+        WrapGsonIndex byPrice = WrapGsonIndex.sorted(wrap, "records", "detail.price");
+        assertEquals(2, byPrice.get(10).size());
+        List<WrapGson> range = byPrice.range(10, 30);
+        assertEquals(3, range.size());
+        assertEquals("b", range.get(0).getAsString("name"));
+        assertEquals("d", range.get(1).getAsString("name"));
+        assertEquals("c", range.get(2).getAsString("name"));
+        assertEquals(1, byPrice.range(25.0, null).size());
+        assertEquals(0, byPrice.range(30, 10).size());
+        assertEquals(0, byPrice.range(10, 10).size());
+    }
+
+    @Test
+    public void indexRebuildsAfterParentChanges() {
+        WrapGson wrap = WrapGson.fromJson("{\"records\":[{\"id\":1}]}");
+        WrapGsonIndex byId = WrapGsonIndex.hash(wrap, "records", "id");
+        assertNotNull(byId.first(1));
+
+        wrap.add("records", WrapGson.fromJson("{\"records\":[{\"id\":2}]}").get("records"));
+        assertNull(byId.first(1));
+        assertNotNull(byId.first(2));
+
+        wrap.remove("records");
+        assertNull(byId.first(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void hashIndexHasNoRange() {
+        WrapGson wrap = WrapGson.fromJson("{\"records\":[{\"id\":1}]}");
+        WrapGsonIndex.hash(wrap, "records", "id").range(0, 2);
+    }
 }